@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks every evaluation function on all benchmark positions. The
+ * neural and NNUE evaluations need a model, which is passed with the system
+ * property "model", e.g.
+ *
+ * -p evaluation=NeuralEvaluation -jvmArgsAppend -Dmodel=model.zip
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+  @Param({"PulseEvaluation", "MaterialEvaluation", "RandomEvaluation"})
+  public String evaluation;
+
+  private Evaluation evaluationFunction;
+  private Position[] positions;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException {
+    String className = getClass().getPackage().getName() + "." + evaluation;
+    if (evaluation.contains("Neural") || evaluation.startsWith("Nnue")) {
+      String model = System.getProperty("model");
+      if (model == null) {
+        throw new IllegalArgumentException(
+            "Please set -Dmodel if you want to use " + evaluation);
+      }
+
+      evaluationFunction = (Evaluation) Class.forName(className)
+          .getDeclaredConstructor(String.class).newInstance(model);
+    } else {
+      evaluationFunction = (Evaluation) Class.forName(className)
+          .getDeclaredConstructor().newInstance();
+    }
+
+    positions = BenchmarkPositions.create();
+  }
+
+  @Benchmark
+  public int evaluate() {
+    int value = 0;
+    for (Position position : positions) {
+      value += evaluationFunction.evaluate(position);
+    }
+
+    return value;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.hayanige.chess.MoveList.MoveEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks move generation and move ordering. Every operation runs once
+ * for every benchmark position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGeneratorBenchmark {
+
+  private final MoveGenerator moveGenerator = new MoveGenerator();
+  private final MoveList<MoveEntry> moveList =
+      new MoveList<>(MoveEntry.class);
+
+  private Position[] positions;
+  private boolean[] checks;
+  private int[][] moves;
+
+  @Setup
+  public void setUp() {
+    positions = BenchmarkPositions.create();
+
+    checks = new boolean[positions.length];
+    moves = new int[positions.length][];
+    for (int i = 0; i < positions.length; ++i) {
+      checks[i] = positions[i].isCheck();
+
+      MoveList<MoveEntry> pseudoLegalMoves = moveGenerator.getMoves(
+          positions[i], 1, checks[i]);
+      // Keep the moves in reverse order, so sorting has some work to do
+      int size = pseudoLegalMoves.size;
+      moves[i] = new int[size];
+      for (int j = 0; j < size; ++j) {
+        moves[i][size - 1 - j] = pseudoLegalMoves.entries[j].move;
+      }
+    }
+  }
+
+  @Benchmark
+  public int getMoves() {
+    int size = 0;
+    for (int i = 0; i < positions.length; ++i) {
+      size += moveGenerator.getMoves(positions[i], 1, checks[i]).size;
+    }
+
+    return size;
+  }
+
+  @Benchmark
+  public int getQuiescentMoves() {
+    int size = 0;
+    for (int i = 0; i < positions.length; ++i) {
+      size += moveGenerator.getMoves(positions[i], 0, checks[i]).size;
+    }
+
+    return size;
+  }
+
+  @Benchmark
+  public int getLegalMoves() {
+    int size = 0;
+    for (int i = 0; i < positions.length; ++i) {
+      size += moveGenerator.getLegalMoves(positions[i], 1, checks[i]).size;
+    }
+
+    return size;
+  }
+
+  /**
+   * Rates and sorts the pseudo legal moves of every position.
+   */
+  @Benchmark
+  public int rateAndSort() {
+    int move = 0;
+    for (int[] positionMoves : moves) {
+      moveList.size = 0;
+      for (int positionMove : positionMoves) {
+        moveList.entries[moveList.size++].move = positionMove;
+      }
+
+      moveList.rateFromMVVLVA();
+      moveList.sort();
+      move ^= moveList.entries[0].move;
+    }
+
+    return move;
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Compares the evaluations per second of NeuralEvaluation with calling
+ * MultiLayerNetwork.output() for every position and with evaluating a
+ * batch of positions in one forward pass. The model is passed with
+ * the system property "model", e.g.
+ *
+ * NeuralEvaluationBenchmark -jvmArgsAppend -Dmodel=model.zip
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralEvaluationBenchmark {
+
+  private static final int BATCH_SIZE = 16;
+
+  private NeuralEvaluation evaluation;
+  private Position[] positions;
+  private int index = 0;
+
+  private INDArray batch;
+  private INDArray[] batchOutputs;
+
+  @Setup
+  public void setUp() {
+    String model = System.getProperty("model");
+    if (model == null) {
+      throw new IllegalArgumentException("Please set -Dmodel");
+    }
+
+    evaluation = new NeuralEvaluation(model);
+    positions = BenchmarkPositions.create();
+
+    batch = Nd4j.create(BATCH_SIZE, NeuralEvaluation.FEATURES);
+    float[] features = new float[NeuralEvaluation.FEATURES];
+    for (int i = 0; i < BATCH_SIZE; ++i) {
+      NeuralEvaluation.getFeatures(nextPosition(), features);
+      for (int j = 0; j < features.length; ++j) {
+        batch.putScalar(i, j, features[j]);
+      }
+    }
+    batchOutputs = evaluation.createOutputs(BATCH_SIZE);
+  }
+
+  private Position nextPosition() {
+    index = (index + 1) % positions.length;
+    return positions[index];
+  }
+
+  /**
+   * Evaluates one position on the preallocated buffers.
+   */
+  @Benchmark
+  public int evaluate() {
+    return evaluation.evaluate(nextPosition());
+  }
+
+  /**
+   * Evaluates one position with a new input array and MultiLayerNetwork
+   * output, like NeuralEvaluation used to do.
+   */
+  @Benchmark
+  public double output() {
+    float[] positionFeatures = new float[NeuralEvaluation.FEATURES];
+    NeuralEvaluation.getFeatures(nextPosition(), positionFeatures);
+
+    return evaluation.model.output(Nd4j.create(positionFeatures), false)
+        .getDouble(0);
+  }
+
+  /**
+   * Evaluates a batch of positions in one forward pass. The result is per
+   * position.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public double batch() {
+    return evaluation.output(batch, batchOutputs).getDouble(0);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.hayanige.chess.MoveList.MoveEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks making and undoing moves, check detection and the conversion
+ * from and to FEN. Every operation runs once for every benchmark position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionBenchmark {
+
+  private Position[] positions;
+  private int[][] moves;
+
+  @Setup
+  public void setUp() {
+    positions = BenchmarkPositions.create();
+
+    moves = new int[positions.length][];
+    for (int i = 0; i < positions.length; ++i) {
+      Position position = positions[i];
+      MoveList<MoveEntry> legalMoves = new MoveGenerator().getLegalMoves(
+          position, 1, position.isCheck());
+
+      moves[i] = new int[legalMoves.size];
+      for (int j = 0; j < legalMoves.size; ++j) {
+        moves[i][j] = legalMoves.entries[j].move;
+      }
+    }
+  }
+
+  @Benchmark
+  public long makeUndoMove() {
+    long zobristKey = 0;
+    for (int i = 0; i < positions.length; ++i) {
+      Position position = positions[i];
+      for (int move : moves[i]) {
+        position.makeMove(move);
+        zobristKey ^= position.zobristKey;
+        position.undoMove(move);
+      }
+    }
+
+    return zobristKey;
+  }
+
+  @Benchmark
+  public void isCheck(Blackhole blackhole) {
+    for (Position position : positions) {
+      blackhole.consume(position.isCheck());
+    }
+  }
+
+  @Benchmark
+  public void isAttacked(Blackhole blackhole) {
+    for (Position position : positions) {
+      for (int square : Square.values) {
+        blackhole.consume(position.isAttacked(square, Color.WHITE));
+        blackhole.consume(position.isAttacked(square, Color.BLACK));
+      }
+    }
+  }
+
+  @Benchmark
+  public void toPosition(Blackhole blackhole) {
+    for (String fen : BenchmarkPositions.FENS) {
+      blackhole.consume(Notation.toPosition(fen));
+    }
+  }
+
+  @Benchmark
+  public void fromPosition(Blackhole blackhole) {
+    for (Position position : positions) {
+      blackhole.consume(Notation.fromPosition(position));
+    }
+  }
+}
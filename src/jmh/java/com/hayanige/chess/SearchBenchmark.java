@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.hayanige.chess.MoveList.RootEntry;
+import java.util.concurrent.Semaphore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a fixed depth search on all benchmark positions. The
+ * transposition table is cleared before every invocation, so every run
+ * searches the same tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+  @Param({"6"})
+  public int depth;
+
+  @Param({"1"})
+  public int threads;
+
+  private final BenchmarkProtocol protocol = new BenchmarkProtocol();
+
+  private Search search;
+  private Position[] positions;
+
+  /**
+   * This protocol ignores all output and signals the end of a search.
+   */
+  private static final class BenchmarkProtocol implements Protocol {
+
+    private final Semaphore finished = new Semaphore(0);
+    private long totalNodes = 0;
+
+    @Override
+    public void sendBestMove(int bestMove, int ponderMove) {
+      finished.release();
+    }
+
+    @Override
+    public void sendStatus(int currentDepth, int currentMaxDepth,
+        long totalNodes, int currentMove, int currentMoveNumber) {
+    }
+
+    @Override
+    public void sendStatus(boolean force, int currentDepth,
+        int currentMaxDepth, long totalNodes, int currentMove,
+        int currentMoveNumber) {
+      this.totalNodes = totalNodes;
+    }
+
+    @Override
+    public void sendMove(RootEntry entry, int pvNumber, int currentDepth,
+        int currentMaxDepth, long totalNodes) {
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    search = new Search(protocol, new PulseEvaluation());
+    search.setThreads(threads);
+    positions = BenchmarkPositions.create();
+  }
+
+  @Setup(Level.Invocation)
+  public void newGame() {
+    search.newGame();
+  }
+
+  @TearDown
+  public void tearDown() {
+    search.quit();
+  }
+
+  @Benchmark
+  public long search() throws InterruptedException {
+    long nodes = 0;
+    for (Position position : positions) {
+      search.newDepthSearch(position, depth);
+      search.start();
+      protocol.finished.acquire();
+
+      nodes += protocol.totalNodes;
+    }
+
+    return nodes;
+  }
+}
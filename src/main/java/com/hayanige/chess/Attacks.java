@@ -0,0 +1,259 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Bitboard.toBitSquare;
+import static com.hayanige.chess.Square.bishopDirections;
+import static com.hayanige.chess.Square.kingDirections;
+import static com.hayanige.chess.Square.knightDirections;
+import static com.hayanige.chess.Square.pawnDirections;
+import static com.hayanige.chess.Square.rookDirections;
+
+/**
+ * This class holds precomputed attack tables. Non-sliding pieces use a simple
+ * table per square. Sliding pieces use magic bitboards: the relevant blockers
+ * are multiplied with a magic number, which maps every blocker configuration
+ * to its attack set.
+ *
+ * All squares are 0x88 squares, all attack sets are bitboards.
+ */
+final class Attacks {
+
+  private static final long[][] pawnAttacks =
+      new long[Color.values.length][64];
+  private static final long[] knightAttacks = new long[64];
+  private static final long[] kingAttacks = new long[64];
+
+  private static final Magic[] bishopMagics = new Magic[64];
+  private static final Magic[] rookMagics = new Magic[64];
+
+  private static final long[][] between = new long[64][64];
+  private static final long[][] line = new long[64][64];
+
+  private static final class Magic {
+
+    private final long mask;
+    private final long magic;
+    private final int shift;
+    private final long[] attacks;
+
+    private Magic(long mask, long magic, int shift, long[] attacks) {
+      this.mask = mask;
+      this.magic = magic;
+      this.shift = shift;
+      this.attacks = attacks;
+    }
+
+    private long get(long occupied) {
+      return attacks[(int) (((occupied & mask) * magic) >>> shift)];
+    }
+  }
+
+  // Initialize the attack tables
+  static {
+    // Use a fixed seed, so we always find the same magic numbers
+    long[] seed = {0x2545F4914F6CDD1DL};
+
+    for (int square : Square.values) {
+      int index = toBitSquare(square);
+
+      for (int color : Color.values) {
+        for (int i = 1; i < pawnDirections[color].length; ++i) {
+          pawnAttacks[color][index] |= walk(square, pawnDirections[color][i],
+              false, 0);
+        }
+      }
+      for (int direction : knightDirections) {
+        knightAttacks[index] |= walk(square, direction, false, 0);
+      }
+      for (int direction : kingDirections) {
+        kingAttacks[index] |= walk(square, direction, false, 0);
+      }
+
+      bishopMagics[index] = findMagic(square, bishopDirections, seed);
+      rookMagics[index] = findMagic(square, rookDirections, seed);
+    }
+
+    for (int square : Square.values) {
+      initializeLines(square, bishopDirections);
+      initializeLines(square, rookDirections);
+    }
+  }
+
+  private Attacks() {
+  }
+
+  /**
+   * Returns the squares attacked by a pawn of the color on the square.
+   */
+  static long pawn(int color, int square) {
+    return pawnAttacks[color][toBitSquare(square)];
+  }
+
+  static long knight(int square) {
+    return knightAttacks[toBitSquare(square)];
+  }
+
+  static long king(int square) {
+    return kingAttacks[toBitSquare(square)];
+  }
+
+  static long bishop(int square, long occupied) {
+    return bishopMagics[toBitSquare(square)].get(occupied);
+  }
+
+  static long rook(int square, long occupied) {
+    return rookMagics[toBitSquare(square)].get(occupied);
+  }
+
+  static long queen(int square, long occupied) {
+    int index = toBitSquare(square);
+    return bishopMagics[index].get(occupied)
+        | rookMagics[index].get(occupied);
+  }
+
+  /**
+   * Returns the squares between both squares if they are on the same rank,
+   * file or diagonal. Otherwise returns an empty set.
+   */
+  static long between(int square1, int square2) {
+    return between[toBitSquare(square1)][toBitSquare(square2)];
+  }
+
+  /**
+   * Returns the whole line through both squares including the squares
+   * themselves if they are on the same rank, file or diagonal. Otherwise
+   * returns an empty set.
+   */
+  static long line(int square1, int square2) {
+    return line[toBitSquare(square1)][toBitSquare(square2)];
+  }
+
+  private static void initializeLines(int square, int[] directions) {
+    int index = toBitSquare(square);
+    long empty = slidingAttacks(square, directions, 0);
+
+    for (long squares = empty; squares != 0;
+        squares = Bitboard.remainder(squares)) {
+      int targetSquare = Bitboard.next(squares);
+      int targetIndex = toBitSquare(targetSquare);
+      long target = 1L << targetIndex;
+
+      between[index][targetIndex] =
+          slidingAttacks(square, directions, target)
+              & slidingAttacks(targetSquare, directions, 1L << index);
+      line[index][targetIndex] = (empty
+          & slidingAttacks(targetSquare, directions, 0))
+          | (1L << index) | target;
+    }
+  }
+
+  /**
+   * Walks from the square into the direction and returns all squares on the
+   * way including the first occupied one.
+   */
+  private static long walk(int square, int direction, boolean sliding,
+      long occupied) {
+    long squares = 0;
+
+    int targetSquare = square + direction;
+    while (Square.isValid(targetSquare)) {
+      long bit = 1L << toBitSquare(targetSquare);
+      squares |= bit;
+
+      if (!sliding || (occupied & bit) != 0) {
+        break;
+      }
+      targetSquare += direction;
+    }
+
+    return squares;
+  }
+
+  private static long slidingAttacks(int square, int[] directions,
+      long occupied) {
+    long attacks = 0;
+    for (int direction : directions) {
+      attacks |= walk(square, direction, true, occupied);
+    }
+
+    return attacks;
+  }
+
+  /**
+   * Returns the relevant blocker squares. The last square of every ray never
+   * blocks anything, so we can leave it out.
+   */
+  private static long relevantMask(int square, int[] directions) {
+    long mask = 0;
+    for (int direction : directions) {
+      int targetSquare = square + direction;
+      while (Square.isValid(targetSquare + direction)) {
+        mask |= 1L << toBitSquare(targetSquare);
+        targetSquare += direction;
+      }
+    }
+
+    return mask;
+  }
+
+  private static Magic findMagic(int square, int[] directions, long[] seed) {
+    long mask = relevantMask(square, directions);
+    int bits = Long.bitCount(mask);
+    int size = 1 << bits;
+    int shift = 64 - bits;
+
+    // Enumerate all blocker subsets of the mask (Carry-Rippler)
+    long[] occupancies = new long[size];
+    long[] references = new long[size];
+    long subset = 0;
+    for (int i = 0; i < size; ++i) {
+      occupancies[i] = subset;
+      references[i] = slidingAttacks(square, directions, subset);
+      subset = (subset - mask) & mask;
+    }
+
+    long[] attacks = new long[size];
+    int[] epochs = new int[size];
+    for (int epoch = 1; ; ++epoch) {
+      // Magics with few set bits work best
+      long magic = nextRandom(seed) & nextRandom(seed) & nextRandom(seed);
+      if (Long.bitCount((mask * magic) >>> 56) < 6) {
+        continue;
+      }
+
+      boolean found = true;
+      for (int i = 0; i < size; ++i) {
+        int index = (int) ((occupancies[i] * magic) >>> shift);
+        if (epochs[index] != epoch) {
+          epochs[index] = epoch;
+          attacks[index] = references[i];
+        } else if (attacks[index] != references[i]) {
+          found = false;
+          break;
+        }
+      }
+
+      if (found) {
+        return new Magic(mask, magic, shift, attacks);
+      }
+    }
+  }
+
+  /**
+   * This is a simple xorshift random number generator.
+   */
+  private static long nextRandom(long[] seed) {
+    long x = seed[0];
+    x ^= x >>> 12;
+    x ^= x << 25;
+    x ^= x >>> 27;
+    seed[0] = x;
+
+    return x * 0x2545F4914F6CDD1DL;
+  }
+}
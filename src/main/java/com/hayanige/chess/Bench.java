@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.hayanige.chess.Depth.MAX_DEPTH;
+import static com.hayanige.chess.Notation.fromMove;
+
+import com.hayanige.chess.MoveList.RootEntry;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class searches all benchmark positions to a fixed depth and prints the
+ * number of nodes. The node count only changes if the search changes, so we
+ * compare it before and after a change of the search. The nodes per
+ * iteration show the effective branching factor.
+ */
+final class Bench {
+
+  /**
+   * This protocol remembers the nodes at the start of every iteration and
+   * signals the end of a search.
+   */
+  private static final class BenchProtocol implements Protocol {
+
+    private final Semaphore finished = new Semaphore(0);
+    private final long[] iterationNodes = new long[MAX_DEPTH + 2];
+    private long totalNodes;
+    private int bestMove;
+
+    private void reset() {
+      Arrays.fill(iterationNodes, -1);
+      totalNodes = 0;
+    }
+
+    @Override
+    public void sendBestMove(int bestMove, int ponderMove) {
+      this.bestMove = bestMove;
+      finished.release();
+    }
+
+    @Override
+    public void sendStatus(int currentDepth, int currentMaxDepth,
+        long totalNodes, int currentMove, int currentMoveNumber) {
+    }
+
+    @Override
+    public void sendStatus(boolean force, int currentDepth,
+        int currentMaxDepth, long totalNodes, int currentMove,
+        int currentMoveNumber) {
+      if (iterationNodes[currentDepth] == -1) {
+        iterationNodes[currentDepth] = totalNodes;
+      }
+      this.totalNodes = totalNodes;
+    }
+
+    @Override
+    public void sendMove(RootEntry entry, int pvNumber, int currentDepth,
+        int currentMaxDepth, long totalNodes) {
+    }
+  }
+
+  private Bench() {
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param disabledOptions the SELECTIVE_OPTIONS of the search to disable.
+   * @return the number of nodes of all positions.
+   */
+  static long run(@NotNull Evaluation evaluation, int depth,
+      @NotNull String[] disabledOptions, @NotNull PrintStream out)
+      throws InterruptedException {
+    checkArgument(depth >= 1 && depth <= MAX_DEPTH);
+
+    BenchProtocol protocol = new BenchProtocol();
+    Search search = new Search(protocol, evaluation);
+    for (String option : disabledOptions) {
+      search.setSelectiveOption(option, false);
+    }
+
+    long[] depthNodes = new long[depth + 1];
+    long totalNodes = 0;
+    long startTime = System.currentTimeMillis();
+
+    for (String fen : BenchmarkPositions.FENS) {
+      search.newGame();
+      search.newDepthSearch(Notation.toPosition(fen), depth);
+      protocol.reset();
+      search.start();
+      protocol.finished.acquire();
+
+      // The nodes of an iteration are the difference to the next one
+      long[] iterationNodes = protocol.iterationNodes;
+      iterationNodes[depth + 1] = protocol.totalNodes;
+      for (int i = 1; i <= depth; ++i) {
+        if (iterationNodes[i] != -1) {
+          int next = i + 1;
+          while (iterationNodes[next] == -1) {
+            ++next;
+          }
+          depthNodes[i] += iterationNodes[next] - iterationNodes[i];
+        }
+      }
+
+      totalNodes += protocol.totalNodes;
+      out.println(String.format("%-72s %10d %s", fen, protocol.totalNodes,
+          fromMove(protocol.bestMove)));
+    }
+
+    long time = System.currentTimeMillis() - startTime;
+    search.quit();
+
+    out.println();
+    out.println(String.format("%5s %12s %6s", "depth", "nodes", "ebf"));
+    for (int i = 1; i <= depth; ++i) {
+      out.println(String.format("%5d %12d %6.2f", i, depthNodes[i],
+          i > 1 && depthNodes[i - 1] > 0
+              ? (double) depthNodes[i] / depthNodes[i - 1] : 0.0));
+    }
+
+    out.println();
+    out.println("Nodes: " + totalNodes + ", time: " + time + " ms, nps: "
+        + (time > 0 ? totalNodes * 1000 / time : 0));
+
+    return totalNodes;
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+/**
+ * This class holds the positions used by all benchmarks. They cover the
+ * opening, a crowded middlegame with castling rights, en passant and an
+ * endgame.
+ */
+final class BenchmarkPositions {
+
+  static final String[] FENS = {
+      Notation.STANDARDPOSITION,
+      "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+      "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+      "2rq1rk1/pp1bppbp/2np1np1/8/3NP3/1BN1BP2/PPPQ2PP/2KR3R b - - 0 11",
+      "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+      "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+  };
+
+  private BenchmarkPositions() {
+  }
+
+  static Position[] create() {
+    Position[] positions = new Position[FENS.length];
+    for (int i = 0; i < FENS.length; ++i) {
+      positions[i] = Notation.toPosition(FENS[i]);
+    }
+
+    return positions;
+  }
+}
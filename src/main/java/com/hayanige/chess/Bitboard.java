@@ -22,11 +22,18 @@ final class Bitboard {
     return squares & (squares - 1);
   }
 
-  private static int toX88Square(int square) {
+  /**
+   * Returns a bitboard containing only the square.
+   */
+  static long valueOf(int square) {
+    return 1L << toBitSquare(square);
+  }
+
+  static int toX88Square(int square) {
     return ((square & ~7) << 1) | (square & 7);
   }
 
-  private static int toBitSquare(int square) {
+  static int toBitSquare(int square) {
     return ((square & ~7) >>> 1) | (square & 7);
   }
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This evaluation remembers the values of another evaluation in an IntTable
+ * indexed by the zobrist key, which all search threads share.
+ *
+ * A size of 0 disables the cache.
+ */
+final class CachedEvaluation extends Evaluation {
+
+  static final int DEFAULT_SIZE = 0;
+  static final int MIN_SIZE = 0;
+  static final int MAX_SIZE = 1024;
+
+  final Evaluation evaluation;
+
+  private IntTable table;
+
+  private final LongAdder probes = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+
+  CachedEvaluation(@NotNull Evaluation evaluation, int megabytes) {
+    this.evaluation = evaluation;
+
+    resize(megabytes);
+  }
+
+  /**
+   * Resizes the cache to the given number of megabytes. All entries are lost.
+   */
+  void resize(int megabytes) {
+    checkArgument(megabytes >= MIN_SIZE && megabytes <= MAX_SIZE);
+
+    table = megabytes == 0 ? null : new IntTable(megabytes);
+    resetStatistics();
+  }
+
+  void clear() {
+    if (table != null) {
+      table.clear();
+    }
+  }
+
+  boolean isEnabled() {
+    return table != null;
+  }
+
+  void resetStatistics() {
+    probes.reset();
+    hits.reset();
+  }
+
+  long getProbes() {
+    return probes.sum();
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  void prepare(@NotNull Position position) {
+    evaluation.prepare(position);
+  }
+
+  /**
+   * Evaluates the position.
+   *
+   * @param position the position.
+   * @return the evaluation value in centipawns.
+   */
+  int evaluate(@NotNull Position position) {
+    IntTable table = this.table;
+    if (table == null) {
+      return evaluation.evaluate(position);
+    }
+
+    probes.increment();
+    int value = table.probe(position.zobristKey);
+    if (value != IntTable.NOENTRY) {
+      hits.increment();
+      return value;
+    }
+
+    value = evaluation.evaluate(position);
+    table.store(position.zobristKey, value);
+
+    return value;
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class is a network of dense layers evaluated in plain Java. It does
+ * not need ND4J, so it avoids the native calls and the backend
+ * initialization. DenseNetworkExporter creates the network file from a
+ * model saved by ModelSerializer.
+ *
+ * The file contains the following big-endian values.
+ *
+ * int   : MAGIC
+ * int   : number of layers
+ * for every layer
+ *   int     : number of inputs
+ *   int     : number of outputs
+ *   int     : activation
+ *   float[] : weights, row by row for every input
+ *   float[] : biases
+ */
+final class DenseNetwork {
+
+  static final int MAGIC = 0x45454E31;
+
+  // Activations
+  static final int IDENTITY = 0;
+  static final int RELU = 1;
+  static final int TANH = 2;
+  static final int SIGMOID = 3;
+
+  final int[] sizes;
+  final int[] activations;
+  final float[][] weights;
+  final float[][] biases;
+
+  /**
+   * @param sizes the number of inputs followed by the number of outputs of
+   * every layer.
+   * @param activations the activation of every layer.
+   * @param weights the weights of every layer, row by row for every input.
+   * @param biases the biases of every layer.
+   */
+  DenseNetwork(@NotNull int[] sizes, @NotNull int[] activations,
+      @NotNull float[][] weights, @NotNull float[][] biases) {
+    int layers = activations.length;
+    checkArgument(layers >= 1 && sizes.length == layers + 1
+        && weights.length == layers && biases.length == layers);
+    for (int i = 0; i < layers; ++i) {
+      checkArgument(activations[i] >= IDENTITY && activations[i] <= SIGMOID);
+      checkArgument(weights[i].length == sizes[i] * sizes[i + 1]);
+      checkArgument(biases[i].length == sizes[i + 1]);
+    }
+
+    this.sizes = sizes;
+    this.activations = activations;
+    this.weights = weights;
+    this.biases = biases;
+  }
+
+  static DenseNetwork read(@NotNull String path) throws IOException {
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(path)))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not a network file: " + path);
+      }
+
+      int layers = input.readInt();
+      int[] sizes = new int[layers + 1];
+      int[] activations = new int[layers];
+      float[][] weights = new float[layers][];
+      float[][] biases = new float[layers][];
+      for (int i = 0; i < layers; ++i) {
+        int inputs = input.readInt();
+        checkArgument(i == 0 || inputs == sizes[i], "Invalid layer sizes");
+        sizes[i] = inputs;
+        sizes[i + 1] = input.readInt();
+        activations[i] = input.readInt();
+
+        weights[i] = readFloats(input, sizes[i] * sizes[i + 1]);
+        biases[i] = readFloats(input, sizes[i + 1]);
+      }
+
+      return new DenseNetwork(sizes, activations, weights, biases);
+    }
+  }
+
+  void write(@NotNull String path) throws IOException {
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(path)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(activations.length);
+      for (int i = 0; i < activations.length; ++i) {
+        output.writeInt(sizes[i]);
+        output.writeInt(sizes[i + 1]);
+        output.writeInt(activations[i]);
+
+        for (float weight : weights[i]) {
+          output.writeFloat(weight);
+        }
+        for (float bias : biases[i]) {
+          output.writeFloat(bias);
+        }
+      }
+    }
+  }
+
+  private static float[] readFloats(@NotNull DataInputStream input, int size)
+      throws IOException {
+    float[] values = new float[size];
+    for (int i = 0; i < size; ++i) {
+      values[i] = input.readFloat();
+    }
+
+    return values;
+  }
+
+  /**
+   * Creates the buffers for the layer outputs. Every thread needs its own
+   * buffers.
+   */
+  float[][] createBuffers() {
+    float[][] buffers = new float[activations.length][];
+    for (int i = 0; i < activations.length; ++i) {
+      buffers[i] = new float[sizes[i + 1]];
+    }
+
+    return buffers;
+  }
+
+  /**
+   * Feeds the input through all layers and returns the output of the last
+   * layer, which is the last buffer.
+   */
+  float[] output(@NotNull float[] input, @NotNull float[][] buffers) {
+    for (int layer = 0; layer < activations.length; ++layer) {
+      float[] layerWeights = weights[layer];
+      float[] output = buffers[layer];
+      int outputs = output.length;
+
+      System.arraycopy(biases[layer], 0, output, 0, outputs);
+
+      // Go through the weights row by row, so we can skip zero inputs
+      for (int i = 0, row = 0; i < input.length; ++i, row += outputs) {
+        float value = input[i];
+        if (value != 0) {
+          for (int j = 0; j < outputs; ++j) {
+            output[j] += value * layerWeights[row + j];
+          }
+        }
+      }
+
+      activate(activations[layer], output);
+      input = output;
+    }
+
+    return input;
+  }
+
+  private static void activate(int activation, @NotNull float[] values) {
+    switch (activation) {
+      case IDENTITY:
+        break;
+      case RELU:
+        for (int i = 0; i < values.length; ++i) {
+          values[i] = Math.max(values[i], 0);
+        }
+        break;
+      case TANH:
+        for (int i = 0; i < values.length; ++i) {
+          values[i] = (float) Math.tanh(values[i]);
+        }
+        break;
+      case SIGMOID:
+        for (int i = 0; i < values.length; ++i) {
+          values[i] = (float) (1 / (1 + Math.exp(-values[i])));
+        }
+        break;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+}
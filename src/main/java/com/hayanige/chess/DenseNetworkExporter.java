@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.jetbrains.annotations.NotNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Converts a model saved by ModelSerializer into a DenseNetwork file, which
+ * DenseNeuralEvaluation can load without ND4J.
+ */
+public class DenseNetworkExporter {
+
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("usage: DenseNetworkExporter <model> <network>");
+      System.exit(1);
+    }
+
+    try {
+      MultiLayerNetwork model =
+          ModelSerializer.restoreMultiLayerNetwork(new File(args[0]));
+      toDenseNetwork(model).write(args[1]);
+    } catch (Throwable t) {
+      t.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  static DenseNetwork toDenseNetwork(@NotNull MultiLayerNetwork model)
+      throws IOException {
+    Layer[] layers = model.getLayers();
+    int[] sizes = new int[layers.length + 1];
+    int[] activations = new int[layers.length];
+    float[][] weights = new float[layers.length][];
+    float[][] biases = new float[layers.length][];
+
+    for (int i = 0; i < layers.length; ++i) {
+      org.deeplearning4j.nn.conf.layers.Layer conf =
+          layers[i].conf().getLayer();
+      checkArgument(conf instanceof DenseLayer || conf instanceof OutputLayer,
+          "Only dense layers are supported");
+
+      // The weights have one row per input and one column per output
+      INDArray weight = layers[i].getParam("W");
+      INDArray bias = layers[i].getParam("b");
+      int inputs = weight.rows();
+      int outputs = weight.columns();
+      sizes[i] = inputs;
+      sizes[i + 1] = outputs;
+
+      weights[i] = new float[inputs * outputs];
+      for (int row = 0; row < inputs; ++row) {
+        for (int column = 0; column < outputs; ++column) {
+          weights[i][row * outputs + column] = weight.getFloat(row, column);
+        }
+      }
+      biases[i] = new float[outputs];
+      for (int column = 0; column < outputs; ++column) {
+        biases[i][column] = bias.getFloat(column);
+      }
+
+      activations[i] = toActivation(
+          conf.getActivationFn().getClass().getSimpleName());
+    }
+
+    return new DenseNetwork(sizes, activations, weights, biases);
+  }
+
+  private static int toActivation(@NotNull String name) throws IOException {
+    switch (name) {
+      case "ActivationIdentity":
+        return DenseNetwork.IDENTITY;
+      case "ActivationReLU":
+        return DenseNetwork.RELU;
+      case "ActivationTanH":
+        return DenseNetwork.TANH;
+      case "ActivationSigmoid":
+        return DenseNetwork.SIGMOID;
+      default:
+        throw new IOException("Unsupported activation " + name);
+    }
+  }
+}
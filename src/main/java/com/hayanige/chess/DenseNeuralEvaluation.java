@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Color.BLACK;
+
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This evaluation uses the same features as NeuralEvaluation, but runs the
+ * network in plain Java. It loads a network file created by
+ * DenseNetworkExporter, so ND4J is never initialized.
+ */
+final class DenseNeuralEvaluation extends Evaluation {
+
+  private final DenseNetwork network;
+
+  // Every search thread gets its own buffers
+  private final ThreadLocal<float[][]> buffers;
+  private final ThreadLocal<float[]> features =
+      ThreadLocal.withInitial(() -> new float[NeuralEvaluation.FEATURES]);
+
+  DenseNeuralEvaluation(String path) throws IOException {
+    this(DenseNetwork.read(path));
+  }
+
+  DenseNeuralEvaluation(@NotNull DenseNetwork network) {
+    this.network = network;
+    buffers = ThreadLocal.withInitial(network::createBuffers);
+  }
+
+  /**
+   * Evaluates the position.
+   *
+   * @param position the position.
+   * @return the evaluation value in centipawns.
+   */
+  int evaluate(@NotNull Position position) {
+    float[] positionFeatures = features.get();
+    NeuralEvaluation.getFeatures(position, positionFeatures);
+
+    int value = (int) network.output(positionFeatures, buffers.get())[0];
+
+    if (position.activeColor == BLACK) {
+      value = -value;
+    }
+
+    return value;
+  }
+}
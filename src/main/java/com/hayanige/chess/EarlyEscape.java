@@ -11,10 +11,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.hayanige.chess.Move.NOMOVE;
 import static com.hayanige.chess.Notation.fromMove;
 import static com.hayanige.chess.Notation.fromPosition;
+import static com.hayanige.chess.PieceType.NOPIECETYPE;
+import static com.hayanige.chess.TranspositionTable.LOWER;
+import static com.hayanige.chess.TranspositionTable.UPPER;
 import static com.hayanige.chess.Value.CHECKMATE;
 import static com.hayanige.chess.Value.CHECKMATE_THRESHOLD;
 import static java.lang.Integer.signum;
 import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.System.currentTimeMillis;
 
 import com.fluxchess.jcpi.AbstractEngine;
@@ -28,16 +33,18 @@ import com.fluxchess.jcpi.commands.EngineSetOptionCommand;
 import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
 import com.fluxchess.jcpi.commands.EngineStopCalculatingCommand;
 import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
-import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
 import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
 import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
 import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.GenericColor;
 import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.options.CheckboxOption;
+import com.fluxchess.jcpi.options.SpinnerOption;
 import com.hayanige.chess.MoveList.MoveEntry;
 import com.hayanige.chess.MoveList.RootEntry;
 import java.util.ArrayList;
 import java.util.List;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,9 +59,26 @@ final class EarlyEscape extends AbstractEngine implements Protocol {
 
   private Position currentPosition = Notation.toPosition(
       new GenericBoard(GenericBoard.STANDARDSETUP));
+  private final MoveGenerator moveGenerator = new MoveGenerator();
+
+  // The last position command, so we can continue from it
+  private GenericBoard lastBoard = null;
+  private final List<GenericMove> lastMoves = new ArrayList<>();
+  private long lastZobristKey = 0;
+
+  // Writes info lines to the same stream as the protocol
+  private final InfoWriter infoWriter = new InfoWriter(System.out);
+
+  // Sits in front of the evaluation, disabled unless it has a size
+  private final CachedEvaluation evaluationCache;
 
   public EarlyEscape(Evaluation evaluation) {
-    search = new Search(this, evaluation);
+    this(evaluation, CachedEvaluation.DEFAULT_SIZE);
+  }
+
+  public EarlyEscape(Evaluation evaluation, int evaluationCacheSize) {
+    evaluationCache = new CachedEvaluation(evaluation, evaluationCacheSize);
+    search = new Search(this, evaluationCache);
     evalName = evaluation.getClass().getSimpleName();
   }
 
@@ -70,11 +94,67 @@ final class EarlyEscape extends AbstractEngine implements Protocol {
         "EarlyEscape 0.0.1 - " + evalName,
         "hayanige"
     );
+    answerCommand.addOption(new SpinnerOption("Hash",
+        TranspositionTable.DEFAULT_SIZE, TranspositionTable.MIN_SIZE,
+        TranspositionTable.MAX_SIZE));
+    answerCommand.addOption(new SpinnerOption("Threads",
+        Search.DEFAULT_THREADS, Search.MIN_THREADS, Search.MAX_THREADS));
+    answerCommand.addOption(new SpinnerOption("EvalCache",
+        CachedEvaluation.DEFAULT_SIZE, CachedEvaluation.MIN_SIZE,
+        CachedEvaluation.MAX_SIZE));
+    answerCommand.addOption(new SpinnerOption("MultiPV",
+        Search.DEFAULT_MULTI_PV, Search.MIN_MULTI_PV, Search.MAX_MULTI_PV));
+    for (String option : Search.SELECTIVE_OPTIONS) {
+      answerCommand.addOption(new CheckboxOption(option, true));
+    }
 
     getProtocol().send(answerCommand);
   }
 
   public void receive(EngineSetOptionCommand command) {
+    checkNotNull(command);
+
+    search.stop();
+
+    if ("Hash".equalsIgnoreCase(command.name)) {
+      search.setHashSize(parseSpinnerValue(command.value,
+          TranspositionTable.MIN_SIZE, TranspositionTable.MAX_SIZE));
+    } else if ("Threads".equalsIgnoreCase(command.name)) {
+      search.setThreads(parseSpinnerValue(command.value, Search.MIN_THREADS,
+          Search.MAX_THREADS));
+    } else if ("EvalCache".equalsIgnoreCase(command.name)) {
+      evaluationCache.resize(parseSpinnerValue(command.value,
+          CachedEvaluation.MIN_SIZE, CachedEvaluation.MAX_SIZE));
+    } else if ("MultiPV".equalsIgnoreCase(command.name)) {
+      search.setMultiPv(parseSpinnerValue(command.value, Search.MIN_MULTI_PV,
+          Search.MAX_MULTI_PV));
+    } else {
+      for (String option : Search.SELECTIVE_OPTIONS) {
+        if (option.equalsIgnoreCase(command.name)) {
+          search.setSelectiveOption(option,
+              parseCheckboxValue(command.value));
+        }
+      }
+    }
+  }
+
+  private int parseSpinnerValue(String value, int minValue, int maxValue) {
+    try {
+      return max(minValue, min(maxValue, Integer.parseInt(value.trim())));
+    } catch (NullPointerException | NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid option value: " + value, e);
+    }
+  }
+
+  private boolean parseCheckboxValue(String value) {
+    String trimmedValue = value == null ? null : value.trim();
+    if ("true".equalsIgnoreCase(trimmedValue)) {
+      return true;
+    } else if ("false".equalsIgnoreCase(trimmedValue)) {
+      return false;
+    } else {
+      throw new IllegalArgumentException("Invalid option value: " + value);
+    }
   }
 
   public void receive(EngineDebugCommand command) {
@@ -88,9 +168,12 @@ final class EarlyEscape extends AbstractEngine implements Protocol {
 
   public void receive(EngineNewGameCommand command) {
     search.stop();
+    search.newGame();
 
     currentPosition = Notation.toPosition(
         new GenericBoard(GenericBoard.STANDARDSETUP));
+    lastBoard = null;
+    lastMoves.clear();
   }
 
   public void receive(EngineAnalyzeCommand command) {
@@ -98,29 +181,62 @@ final class EarlyEscape extends AbstractEngine implements Protocol {
 
     search.stop();
 
-    currentPosition = Notation.toPosition(command.board);
-
-    MoveGenerator moveGenerator = new MoveGenerator();
+    // A GUI sends the whole game with every position command. If the command
+    // extends the last one, we only make the new moves.
+    int firstMove = 0;
+    if (command.board.equals(lastBoard)
+        && command.moves.size() >= lastMoves.size()
+        && command.moves.subList(0, lastMoves.size()).equals(lastMoves)
+        && currentPosition.zobristKey == lastZobristKey) {
+      firstMove = lastMoves.size();
+    } else {
+      currentPosition = Notation.toPosition(command.board);
+      lastBoard = command.board;
+      lastMoves.clear();
+    }
 
-    for (GenericMove genericMove : command.moves) {
-      MoveList<MoveEntry> moves = moveGenerator.getLegalMoves(
-          currentPosition, 1, currentPosition.isCheck());
-      boolean found = false;
-      for (int i = 0; i < moves.size; ++i) {
-        int move = moves.entries[i].move;
-        if (fromMove(move).equals(genericMove)) {
-          currentPosition.makeMove(move);
-          found = true;
-          break;
-        }
+    for (int i = firstMove; i < command.moves.size(); ++i) {
+      GenericMove genericMove = command.moves.get(i);
+      int move = toMove(genericMove);
+      if (move == NOMOVE) {
+        // Don't build on a position we could not set up
+        lastBoard = null;
+        lastMoves.clear();
+        throw new IllegalArgumentException();
       }
 
-      if (!found) {
-        throw new IllegalArgumentException();
+      currentPosition.makeMove(move);
+      lastMoves.add(genericMove);
+    }
+    lastZobristKey = currentPosition.zobristKey;
+
+    if (logger.isDebugEnabled()) {
+      logger.debug(fromPosition(currentPosition));
+    }
+  }
+
+  /**
+   * Returns the legal move of the current position which matches the origin,
+   * target and promotion of the generic move or NOMOVE.
+   */
+  private int toMove(@NotNull GenericMove genericMove) {
+    int originSquare = Notation.toSquare(genericMove.from);
+    int targetSquare = Notation.toSquare(genericMove.to);
+    int promotion = genericMove.promotion == null
+        ? NOPIECETYPE : Notation.toPieceType(genericMove.promotion);
+
+    MoveList<MoveEntry> moves = moveGenerator.getLegalMoves(
+        currentPosition, 1, currentPosition.isCheck());
+    for (int i = 0; i < moves.size; ++i) {
+      int move = moves.entries[i].move;
+      if (Move.getOriginSquare(move) == originSquare
+          && Move.getTargetSquare(move) == targetSquare
+          && Move.getPromotion(move) == promotion) {
+        return move;
       }
     }
 
-    logger.debug(fromPosition(currentPosition));
+    return NOMOVE;
   }
 
   public void receive(EngineStartCalculatingCommand command) {
@@ -174,6 +290,7 @@ final class EarlyEscape extends AbstractEngine implements Protocol {
     }
 
     // Go...
+    evaluationCache.resetStatistics();
     search.start();
     startTime = currentTimeMillis();
     statusStartTime = startTime;
@@ -198,10 +315,26 @@ final class EarlyEscape extends AbstractEngine implements Protocol {
       }
     }
 
+    if (evaluationCache.isEnabled()) {
+      sendEvaluationCacheStatistics();
+    }
+
     getProtocol().send(
         new ProtocolBestMoveCommand(genericBestMove, genericPonderMove));
   }
 
+  private void sendEvaluationCacheStatistics() {
+    long probes = evaluationCache.getProbes();
+    long hits = evaluationCache.getHits();
+
+    synchronized (infoWriter) {
+      infoWriter.begin().append(String.format(
+          "string evalcache hits %d of %d (%.1f%%)",
+          hits, probes, probes > 0 ? hits * 100.0 / probes : 0.0));
+      sendInfo();
+    }
+  }
+
   public void sendStatus(int currentDepth, int currentMaxDepth, long totalNodes,
       int currentMove, int currentMoveNumber) {
     if (currentTimeMillis() - statusStartTime >= 1000) {
@@ -215,123 +348,71 @@ final class EarlyEscape extends AbstractEngine implements Protocol {
     long timeDelta = currentTimeMillis() - startTime;
 
     if (force || timeDelta >= 1000) {
-      ProtocolInformationCommand command = new ProtocolInformationCommand();
-
-      command.setDepth(currentDepth);
-      command.setMaxDepth(currentMaxDepth);
-      command.setNodes(totalNodes);
-      command.setTime(timeDelta);
-      command.setNps(timeDelta >= 1000 ? (totalNodes * 1000) / timeDelta : 0);
-      if (currentMove != NOMOVE) {
-        command.setCurrentMove(fromMove(currentMove));
-        command.setCurrentMoveNumber(currentMoveNumber);
+      synchronized (infoWriter) {
+        infoWriter.begin()
+            .append("depth", currentDepth)
+            .append("seldepth", currentMaxDepth);
+        if (currentMove != NOMOVE) {
+          infoWriter.append("currmove").appendMove(currentMove)
+              .append("currmovenumber", currentMoveNumber);
+        }
+        infoWriter.append("hashfull", search.getHashfull())
+            .append("nps", timeDelta >= 1000
+                ? (totalNodes * 1000) / timeDelta : 0)
+            .append("time", timeDelta)
+            .append("nodes", totalNodes);
+        sendInfo();
       }
 
-      getProtocol().send(command);
-      loggingSendInfo(command);
-
       statusStartTime = currentTimeMillis();
     }
   }
 
-  public void sendMove(RootEntry entry, int currentDepth, int currentMaxDepth,
-      long totalNodes) {
+  public void sendMove(RootEntry entry, int pvNumber, int currentDepth,
+      int currentMaxDepth, long totalNodes) {
     long timeDelta = currentTimeMillis() - startTime;
 
-    ProtocolInformationCommand command = new ProtocolInformationCommand();
-
-    command.setDepth(currentDepth);
-    command.setMaxDepth(currentMaxDepth);
-    command.setNodes(totalNodes);
-    command.setTime(timeDelta);
-    command.setNps(timeDelta >= 1000 ? (totalNodes * 1000) / timeDelta : 0);
-    if (abs(entry.value) >= CHECKMATE_THRESHOLD) {
-      int mateDepth = CHECKMATE - abs(entry.value);
-      command.setMate(signum(entry.value) * (mateDepth + 1) / 2);
-    } else {
-      command.setCentipawns(entry.value);
-    }
-    List<GenericMove> moveList = new ArrayList<>();
-    for (int i = 0; i < entry.pv.size; ++i) {
-      moveList.add(fromMove(entry.pv.moves[i]));
+    synchronized (infoWriter) {
+      infoWriter.begin()
+          .append("multipv", pvNumber)
+          .append("depth", currentDepth)
+          .append("seldepth", currentMaxDepth);
+      if (abs(entry.value) >= CHECKMATE_THRESHOLD) {
+        int mateDepth = CHECKMATE - abs(entry.value);
+        infoWriter.append("score mate",
+            signum(entry.value) * (mateDepth + 1) / 2);
+      } else {
+        infoWriter.append("score cp", entry.value);
+      }
+      if (entry.bound == LOWER) {
+        infoWriter.append("lowerbound");
+      } else if (entry.bound == UPPER) {
+        infoWriter.append("upperbound");
+      }
+      infoWriter.append("nps", timeDelta >= 1000
+              ? (totalNodes * 1000) / timeDelta : 0)
+          .append("time", timeDelta)
+          .append("nodes", totalNodes);
+
+      // The pv comes last, as it has no end marker
+      infoWriter.append("pv");
+      for (int i = 0; i < entry.pv.size; ++i) {
+        infoWriter.appendMove(entry.pv.moves[i]);
+      }
+      sendInfo();
     }
-    command.setMoveList(moveList);
-
-    getProtocol().send(command);
-    loggingSendInfo(command);
 
     statusStartTime = currentTimeMillis();
   }
 
-  public void loggingSendInfo(ProtocolInformationCommand command) {
-    String infoCommand = "info";
-
-    if (command.getPvNumber() != null) {
-      infoCommand += " multipv " + command.getPvNumber().toString();
-    }
-    if (command.getDepth() != null) {
-      infoCommand += " depth " + command.getDepth().toString();
-
-      if (command.getMaxDepth() != null) {
-        infoCommand += " seldepth " + command.getMaxDepth().toString();
-      }
-    }
-    if (command.getMate() != null) {
-      infoCommand += " score mate " + command.getMate().toString();
-    } else if (command.getCentipawns() != null) {
-      infoCommand += " score cp " + command.getCentipawns().toString();
-    }
-    if (command.getValue() != null) {
-      switch (command.getValue()) {
-        case EXACT:
-          break;
-        case ALPHA:
-          infoCommand += " upperbound";
-          break;
-        case BETA:
-          infoCommand += " lowerbound";
-          break;
-        default:
-          assert false : command.getValue();
-      }
-    }
-    if (command.getMoveList() != null) {
-      infoCommand += " pv";
-      for (GenericMove move : command.getMoveList()) {
-        infoCommand += " ";
-        infoCommand += move.toString();
-      }
-    }
-    if (command.getRefutationList() != null) {
-      infoCommand += " refutation";
-      for (GenericMove move : command.getRefutationList()) {
-        infoCommand += " ";
-        infoCommand += move.toString();
-      }
+  /**
+   * Sends the line of the info writer. We only format the line for the log
+   * if debug logging is enabled.
+   */
+  private void sendInfo() {
+    infoWriter.send();
+    if (logger.isDebugEnabled()) {
+      logger.debug(infoWriter.toString());
     }
-    if (command.getCurrentMove() != null) {
-      infoCommand += " currmove " + command.getCurrentMove().toString();
-    }
-    if (command.getCurrentMoveNumber() != null) {
-      infoCommand +=
-          " currmovenumber " + command.getCurrentMoveNumber().toString();
-    }
-    if (command.getHash() != null) {
-      infoCommand += " hashfull " + command.getHash().toString();
-    }
-    if (command.getNps() != null) {
-      infoCommand += " nps " + command.getNps().toString();
-    }
-    if (command.getTime() != null) {
-      infoCommand += " time " + command.getTime().toString();
-    }
-    if (command.getNodes() != null) {
-      infoCommand += " nodes " + command.getNodes().toString();
-    }
-    if (command.getString() != null) {
-      infoCommand += " string " + command.getString();
-    }
-
-    logger.debug(infoCommand);
   }
 }
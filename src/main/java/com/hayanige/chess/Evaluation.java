@@ -18,4 +18,11 @@ abstract class Evaluation {
    * @return the evaluation value in centipawns.
    */
   abstract int evaluate(@NotNull Position position);
+
+  /**
+   * Prepares the root position of a search thread before the search. An
+   * evaluation may attach incremental state to the position here.
+   */
+  void prepare(@NotNull Position position) {
+  }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Move.NOMOVE;
+import static java.lang.Math.abs;
+import static java.lang.Math.min;
+
+import java.util.Arrays;
+
+/**
+ * This class remembers which quiet moves caused cut-offs in earlier nodes.
+ * Every search thread has its own history, so we need no synchronization.
+ *
+ * The butterfly table rates a move by its piece and target square. Moves
+ * which cause a cut-off get a bonus and the quiet moves searched before get
+ * a malus. The counter move table stores the quiet move which refuted the
+ * previous move, indexed by the piece and target square of the previous
+ * move.
+ */
+final class History {
+
+  static final int MAX_VALUE = 1 << 14;
+
+  // The bonus grows with the depth, but a single cut-off at a high depth
+  // should not dominate the table
+  private static final int MAX_BONUS = 1 << 10;
+
+  private final int[][] butterfly =
+      new int[Piece.values.length][Square.VALUES_LENGTH];
+  private final int[][] counterMoves =
+      new int[Piece.values.length][Square.VALUES_LENGTH];
+
+  History() {
+    clear();
+  }
+
+  void clear() {
+    for (int[] values : butterfly) {
+      Arrays.fill(values, 0);
+    }
+    for (int[] moves : counterMoves) {
+      Arrays.fill(moves, NOMOVE);
+    }
+  }
+
+  /**
+   * Halves all values, so moves of the last search still count, but new
+   * cut-offs quickly take over.
+   */
+  void age() {
+    for (int[] values : butterfly) {
+      for (int i = 0; i < values.length; ++i) {
+        values[i] /= 2;
+      }
+    }
+  }
+
+  int get(int move) {
+    return butterfly[Move.getOriginPiece(move)][Move.getTargetSquare(move)];
+  }
+
+  /**
+   * Rewards the quiet move which caused a cut-off and punishes the quiet
+   * moves we searched before it.
+   *
+   * @param move the cut-off move.
+   * @param previousMove the move leading to the node or NOMOVE.
+   * @param quietMoves the quiet moves searched before the cut-off move.
+   * @param quietMovesSize the number of such moves.
+   */
+  void update(int move, int previousMove, int depth, int[] quietMoves,
+      int quietMovesSize) {
+    int bonus = min(depth * depth, MAX_BONUS);
+
+    add(move, bonus);
+    for (int i = 0; i < quietMovesSize; ++i) {
+      add(quietMoves[i], -bonus);
+    }
+
+    if (previousMove != NOMOVE) {
+      counterMoves[Move.getOriginPiece(previousMove)]
+          [Move.getTargetSquare(previousMove)] = move;
+    }
+  }
+
+  /**
+   * Returns the quiet move which refuted the previous move last time or
+   * NOMOVE.
+   */
+  int getCounterMove(int previousMove) {
+    if (previousMove == NOMOVE) {
+      return NOMOVE;
+    }
+
+    return counterMoves[Move.getOriginPiece(previousMove)]
+        [Move.getTargetSquare(previousMove)];
+  }
+
+  /**
+   * Adds the bonus and scales the value down as it approaches MAX_VALUE, so
+   * the values stay within [-MAX_VALUE, MAX_VALUE].
+   */
+  private void add(int move, int bonus) {
+    int[] values = butterfly[Move.getOriginPiece(move)];
+    int targetSquare = Move.getTargetSquare(move);
+
+    values[targetSquare] += bonus - values[targetSquare] * abs(bonus)
+        / MAX_VALUE;
+  }
+}
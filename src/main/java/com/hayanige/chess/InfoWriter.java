@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.hayanige.chess.Depth.MAX_PLY;
+import static com.hayanige.chess.MoveType.PAWNPROMOTION;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.PrintStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class writes UCI info lines straight from the int move encoding into
+ * a reusable buffer. We send status lines many times per second, so we
+ * don't build a ProtocolInformationCommand and a list of GenericMoves for
+ * every line.
+ *
+ * A line starts with begin() and is written with send(). The writer is not
+ * thread safe, callers have to synchronize on it.
+ */
+final class InfoWriter {
+
+  // Enough for all fields and a pv of MAX_PLY moves
+  private static final int MAX_LENGTH = 256 + MAX_PLY * 6;
+
+  // Indexed by piece type
+  private static final byte[] PROMOTION_CHARS = {
+      'p', 'n', 'b', 'r', 'q', 'k'
+  };
+
+  private static final byte[] LINE_SEPARATOR =
+      System.lineSeparator().getBytes(US_ASCII);
+
+  private final PrintStream out;
+  private final byte[] buffer = new byte[MAX_LENGTH];
+  private int length = 0;
+
+  InfoWriter(@NotNull PrintStream out) {
+    this.out = checkNotNull(out);
+  }
+
+  InfoWriter begin() {
+    length = 0;
+    appendText("info");
+
+    return this;
+  }
+
+  /**
+   * Appends a keyword like "lowerbound" or "pv".
+   */
+  InfoWriter append(@NotNull String key) {
+    buffer[length++] = ' ';
+    appendText(key);
+
+    return this;
+  }
+
+  /**
+   * Appends a keyword and its value like "depth 5".
+   */
+  InfoWriter append(@NotNull String key, long value) {
+    append(key);
+    buffer[length++] = ' ';
+    appendNumber(value);
+
+    return this;
+  }
+
+  /**
+   * Appends a move in coordinate notation like "e7e8q".
+   */
+  InfoWriter appendMove(int move) {
+    buffer[length++] = ' ';
+    appendSquare(Move.getOriginSquare(move));
+    appendSquare(Move.getTargetSquare(move));
+    if (Move.getType(move) == PAWNPROMOTION) {
+      buffer[length++] = PROMOTION_CHARS[Move.getPromotion(move)];
+    }
+
+    return this;
+  }
+
+  /**
+   * Writes the line and a line separator in one call, so it does not mix
+   * with lines of other writers to the same stream.
+   */
+  void send() {
+    System.arraycopy(LINE_SEPARATOR, 0, buffer, length,
+        LINE_SEPARATOR.length);
+    out.write(buffer, 0, length + LINE_SEPARATOR.length);
+    out.flush();
+  }
+
+  /**
+   * Returns the current line. Only used for logging.
+   */
+  @Override
+  public String toString() {
+    return new String(buffer, 0, length, US_ASCII);
+  }
+
+  private void appendText(@NotNull String text) {
+    for (int i = 0; i < text.length(); ++i) {
+      buffer[length++] = (byte) text.charAt(i);
+    }
+  }
+
+  private void appendSquare(int square) {
+    buffer[length++] = (byte) ('a' + Square.getFile(square));
+    buffer[length++] = (byte) ('1' + Square.getRank(square));
+  }
+
+  private void appendNumber(long value) {
+    if (value < 0) {
+      buffer[length++] = '-';
+      value = -value;
+    }
+
+    // Write the digits backwards and reverse them
+    int start = length;
+    do {
+      buffer[length++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    for (int i = start, j = length - 1; i < j; ++i, --j) {
+      byte digit = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = digit;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * This class is a fixed-size, direct-mapped table of int values indexed by a
+ * zobrist key. Like the TranspositionTable every entry is a key and a data
+ * long, and the key is stored XOR-ed with the data, so all search threads
+ * can share the table without locks. A torn entry simply does not match.
+ */
+final class IntTable {
+
+  static final int NOENTRY = Integer.MIN_VALUE;
+
+  private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+  // Marks a valid entry, so a value of 0 is not an empty entry
+  private static final long VALID = 1L << 32;
+
+  private final long[] entries;
+  private final int mask;
+
+  /**
+   * Creates the largest power of two number of entries which fits into the
+   * given number of megabytes.
+   */
+  IntTable(int megabytes) {
+    checkArgument(megabytes >= 1);
+
+    long size = Long.highestOneBit(
+        (long) megabytes * 1024 * 1024 / ENTRY_SIZE);
+    entries = new long[(int) size * 2];
+    mask = (int) size - 1;
+  }
+
+  void clear() {
+    Arrays.fill(entries, 0);
+  }
+
+  /**
+   * Returns the value stored for the zobristKey or NOENTRY if there is no
+   * such entry.
+   */
+  int probe(long zobristKey) {
+    int index = ((int) zobristKey & mask) << 1;
+    long data = entries[index + 1];
+
+    if ((entries[index] ^ data) == zobristKey && data != 0) {
+      return (int) data;
+    } else {
+      return NOENTRY;
+    }
+  }
+
+  void store(long zobristKey, int value) {
+    int index = ((int) zobristKey & mask) << 1;
+    long data = VALID | (value & 0xFFFFFFFFL);
+
+    entries[index] = zobristKey ^ data;
+    entries[index + 1] = data;
+  }
+}
@@ -18,6 +18,9 @@ public class Main {
 
   private static String evalFunc = null;
   private static String model = null;
+  private static int evaluationCacheSize = CachedEvaluation.DEFAULT_SIZE;
+  private static int benchDepth = 0;
+  private static String[] disabledOptions = new String[0];
 
   public static void main(String[] args) throws IOException {
     Options opts = createOption();
@@ -46,11 +49,26 @@ public class Main {
       model = cli.getOptionValue("m");
     }
 
+    if (cli.hasOption("c")) {
+      evaluationCacheSize = Integer.parseInt(cli.getOptionValue("c"));
+    }
+
+    if (cli.hasOption("b")) {
+      benchDepth = Integer.parseInt(cli.getOptionValue("b"));
+    }
+
+    if (cli.hasOption("d")) {
+      disabledOptions = cli.getOptionValue("d").split(",");
+    }
+
     try {
       Evaluation evaluation;
       String neuralEval = NeuralEvaluation.class.getCanonicalName();
       String neuralRandomEval = NeuralRandomEvaluation.class.getCanonicalName();
-      if (neuralEval.equals(evalFunc) || neuralRandomEval.equals(evalFunc)) {
+      String denseNeuralEval = DenseNeuralEvaluation.class.getCanonicalName();
+      String nnueEval = NnueEvaluation.class.getCanonicalName();
+      if (neuralEval.equals(evalFunc) || neuralRandomEval.equals(evalFunc)
+          || denseNeuralEval.equals(evalFunc) || nnueEval.equals(evalFunc)) {
         if (model == null) {
           throw new IllegalArgumentException(
               "Please set a model if you want to use NeuralEvaluation");
@@ -62,7 +80,12 @@ public class Main {
         evaluation = (Evaluation) Class.forName(evalFunc).newInstance();
       }
 
-      new EarlyEscape(evaluation).run();
+      if (benchDepth > 0) {
+        Bench.run(new CachedEvaluation(evaluation, evaluationCacheSize),
+            benchDepth, disabledOptions, System.out);
+      } else {
+        new EarlyEscape(evaluation, evaluationCacheSize).run();
+      }
     } catch (Throwable t) {
       t.printStackTrace();
       System.exit(1);
@@ -86,6 +109,28 @@ public class Main {
         .build()
     );
 
+    result.addOption(Option.builder("c")
+        .longOpt("cache")
+        .desc("evaluation cache size in MB, 0 disables the cache")
+        .hasArg()
+        .build()
+    );
+
+    result.addOption(Option.builder("b")
+        .longOpt("bench")
+        .desc("search the benchmark positions to the depth and print the nodes")
+        .hasArg()
+        .build()
+    );
+
+    result.addOption(Option.builder("d")
+        .longOpt("disable")
+        .desc("comma separated selective search options to disable in bench, "
+            + String.join(",", Search.SELECTIVE_OPTIONS))
+        .hasArg()
+        .build()
+    );
+
     return result;
   }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Color.BLACK;
+import static com.hayanige.chess.Color.WHITE;
+import static com.hayanige.chess.PieceType.BISHOP;
+import static com.hayanige.chess.PieceType.BISHOP_VALUE;
+import static com.hayanige.chess.PieceType.KING;
+import static com.hayanige.chess.PieceType.KNIGHT;
+import static com.hayanige.chess.PieceType.PAWN;
+import static com.hayanige.chess.PieceType.QUEEN;
+import static com.hayanige.chess.PieceType.ROOK;
+import static java.lang.Math.abs;
+import static java.lang.Math.min;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class holds precomputed information about every combination of
+ * piece counts. Position maintains the index of its combination, the
+ * material key, in put() and remove(). Positions with more pieces of a type
+ * than the table covers, e.g. after promoting to a second queen, are
+ * computed on the fly.
+ *
+ * An entry is represented by the following bits.
+ *
+ *  0 - 15 : imbalance from the perspective of white (signed)
+ * 16 - 23 : game phase
+ * 24      : insufficient material
+ * 25      : drawish
+ */
+final class MaterialTable {
+
+  static final int MAX_PHASE = 24;
+
+  static final int INSUFFICIENT = 1 << 24;
+  static final int DRAWISH = 1 << 25;
+
+  private static final int PHASE_SHIFT = 16;
+  private static final int PHASE_MASK = 0xFF << PHASE_SHIFT;
+
+  // The maximum count of every piece type covered by the table. Kings are
+  // not part of the key.
+  private static final int[] maxCounts = {8, 2, 2, 2, 1, 0};
+
+  // The material key weight of every piece
+  private static final int[][] weights =
+      new int[Color.values.length][PieceType.values.length];
+
+  private static final int[] entries;
+
+  private static final ThreadLocal<int[][]> counts = ThreadLocal.withInitial(
+      () -> new int[Color.values.length][PieceType.values.length]);
+
+  static {
+    int size = 1;
+    for (int color : Color.values) {
+      for (int pieceType : PieceType.values) {
+        if (pieceType != KING) {
+          weights[color][pieceType] = size;
+          size *= maxCounts[pieceType] + 1;
+        }
+      }
+    }
+
+    entries = new int[size];
+    int[][] counts = new int[Color.values.length][PieceType.values.length];
+    for (int key = 0; key < size; ++key) {
+      for (int color : Color.values) {
+        for (int pieceType : PieceType.values) {
+          if (pieceType != KING) {
+            counts[color][pieceType] = key / weights[color][pieceType]
+                % (maxCounts[pieceType] + 1);
+          }
+        }
+      }
+      entries[key] = compute(counts);
+    }
+  }
+
+  private MaterialTable() {
+  }
+
+  /**
+   * Returns whether a piece of the type is counted in the material key if
+   * the position has count pieces of the color and type including it.
+   */
+  static boolean isCovered(int pieceType, int count) {
+    return pieceType == KING || count <= maxCounts[pieceType];
+  }
+
+  static int getWeight(int color, int pieceType) {
+    return weights[color][pieceType];
+  }
+
+  static int get(@NotNull Position position) {
+    if (position.materialOverflow == 0) {
+      return entries[position.materialKey];
+    }
+
+    int[][] positionCounts = counts.get();
+    for (int color : Color.values) {
+      for (int pieceType : PieceType.values) {
+        positionCounts[color][pieceType] =
+            position.pieces[color][pieceType].size();
+      }
+    }
+
+    return compute(positionCounts);
+  }
+
+  static int getImbalance(int entry) {
+    return (short) entry;
+  }
+
+  static int getPhase(int entry) {
+    return (entry & PHASE_MASK) >>> PHASE_SHIFT;
+  }
+
+  static boolean isInsufficient(int entry) {
+    return (entry & INSUFFICIENT) != 0;
+  }
+
+  static boolean isDrawish(int entry) {
+    return (entry & DRAWISH) != 0;
+  }
+
+  private static int compute(@NotNull int[][] counts) {
+    int imbalance = 0;
+    int phase = 0;
+    for (int color : Color.values) {
+      int[] count = counts[color];
+      int sign = color == WHITE ? 1 : -1;
+
+      // Add bonus for bishop pair
+      if (count[BISHOP] >= 2) {
+        imbalance += sign * 50;
+      }
+
+      // Knights get better and rooks get worse with more pawns
+      imbalance += sign * count[KNIGHT] * (count[PAWN] - 5) * 6;
+      imbalance -= sign * count[ROOK] * (count[PAWN] - 5) * 12;
+
+      phase += count[KNIGHT] + count[BISHOP] + 2 * count[ROOK]
+          + 4 * count[QUEEN];
+    }
+
+    int[] white = counts[WHITE];
+    int[] black = counts[BLACK];
+    int entry = (imbalance & 0xFFFF) | (min(phase, MAX_PHASE) << PHASE_SHIFT);
+
+    if (white[PAWN] == 0 && black[PAWN] == 0) {
+      // If there is only one minor left, we are unable to checkmate
+      if (white[ROOK] == 0 && black[ROOK] == 0
+          && white[QUEEN] == 0 && black[QUEEN] == 0
+          && white[KNIGHT] + white[BISHOP] <= 1
+          && black[KNIGHT] + black[BISHOP] <= 1) {
+        entry |= INSUFFICIENT;
+      } else if (abs(getPieceMaterial(white) - getPieceMaterial(black))
+          < BISHOP_VALUE
+          || isTwoKnights(white, black) || isTwoKnights(black, white)) {
+        // Without pawns we need more than a minor piece ahead to win. Two
+        // knights cannot force checkmate either.
+        entry |= DRAWISH;
+      }
+    }
+
+    return entry;
+  }
+
+  private static int getPieceMaterial(@NotNull int[] count) {
+    int material = 0;
+    for (int pieceType : PieceType.values) {
+      if (pieceType != PAWN && pieceType != KING) {
+        material += count[pieceType] * PieceType.getValue(pieceType);
+      }
+    }
+
+    return material;
+  }
+
+  private static boolean isTwoKnights(@NotNull int[] strong,
+      @NotNull int[] weak) {
+    return strong[KNIGHT] == 2 && strong[BISHOP] == 0 && strong[ROOK] == 0
+        && strong[QUEEN] == 0 && weak[KNIGHT] + weak[BISHOP] + weak[ROOK]
+        + weak[QUEEN] == 0;
+  }
+}
@@ -17,6 +17,7 @@ import static com.hayanige.chess.Castling.WHITE_QUEENSIDE;
 import static com.hayanige.chess.Color.BLACK;
 import static com.hayanige.chess.Color.WHITE;
 import static com.hayanige.chess.Color.opposite;
+import static com.hayanige.chess.Move.NOMOVE;
 import static com.hayanige.chess.MoveType.CASTLING;
 import static com.hayanige.chess.MoveType.ENPASSANT;
 import static com.hayanige.chess.MoveType.NORMAL;
@@ -30,16 +31,15 @@ import static com.hayanige.chess.PieceType.NOPIECETYPE;
 import static com.hayanige.chess.PieceType.PAWN;
 import static com.hayanige.chess.PieceType.QUEEN;
 import static com.hayanige.chess.PieceType.ROOK;
-import static com.hayanige.chess.PieceType.isSliding;
 import static com.hayanige.chess.Rank.r1;
 import static com.hayanige.chess.Rank.r4;
 import static com.hayanige.chess.Rank.r5;
 import static com.hayanige.chess.Rank.r8;
 import static com.hayanige.chess.Square.N;
+import static com.hayanige.chess.Square.NOSQUARE;
 import static com.hayanige.chess.Square.S;
 import static com.hayanige.chess.Square.b1;
 import static com.hayanige.chess.Square.b8;
-import static com.hayanige.chess.Square.bishopDirections;
 import static com.hayanige.chess.Square.c1;
 import static com.hayanige.chess.Square.c8;
 import static com.hayanige.chess.Square.d1;
@@ -48,11 +48,7 @@ import static com.hayanige.chess.Square.f1;
 import static com.hayanige.chess.Square.f8;
 import static com.hayanige.chess.Square.g1;
 import static com.hayanige.chess.Square.g8;
-import static com.hayanige.chess.Square.kingDirections;
-import static com.hayanige.chess.Square.knightDirections;
 import static com.hayanige.chess.Square.pawnDirections;
-import static com.hayanige.chess.Square.queenDirections;
-import static com.hayanige.chess.Square.rookDirections;
 
 import com.hayanige.chess.MoveList.MoveEntry;
 import org.jetbrains.annotations.NotNull;
@@ -84,161 +80,179 @@ final class MoveGenerator {
 
   MoveList<MoveEntry> getMoves(@NotNull Position position, int depth,
       boolean isCheck) {
+    return getMoves(position, depth, isCheck, NOMOVE);
+  }
+
+  /**
+   * Generates the moves and puts the hash move in front of all other moves,
+   * if we have one.
+   */
+  MoveList<MoveEntry> getMoves(@NotNull Position position, int depth,
+      boolean isCheck, int hashMove) {
     moves.size = 0;
 
+    addCaptures(moves, position);
+
     if (depth > 0) {
       // Generate main moves
-
-      addMoves(moves, position);
-
-      if (!isCheck) {
-        int square = next(position.pieces[position.activeColor][KING].squares);
-        addCastlingMoves(moves, square, position);
-      }
-    } else {
-      // Generate quiescent moves
-
-      addMoves(moves, position);
-
-      if (!isCheck) {
-        int size = moves.size;
-        moves.size = 0;
-        for (int i = 0; i < size; ++i) {
-          if (Move.getTargetPiece(moves.entries[i].move) != NOPIECE) {
-            // Add only capturing moves
-            moves.entries[moves.size++].move = moves.entries[i].move;
-          }
-        }
-      }
+      addQuiets(moves, position, !isCheck);
+    } else if (isCheck) {
+      // Generate quiescent evasions
+      addQuiets(moves, position, false);
     }
 
     moves.rateFromMVVLVA();
+    if (hashMove != NOMOVE) {
+      moves.rateHashMove(hashMove);
+    }
     moves.sort();
 
     return moves;
   }
 
-  private void addMoves(@NotNull MoveList<MoveEntry> list,
+  /**
+   * Adds all capturing moves including en passant and capturing promotions.
+   */
+  void addCaptures(@NotNull MoveList<MoveEntry> list,
       @NotNull Position position) {
     int activeColor = position.activeColor;
 
     for (long squares = position.pieces[activeColor][PAWN].squares;
         squares != 0; squares = remainder(squares)) {
-      int square = next(squares);
-      addPawnMoves(list, square, position);
+      addPawnCaptures(list, next(squares), position);
     }
 
+    addPieceMoves(list,
+        position.occupancy[opposite(activeColor)].squares, position);
+  }
+
+  /**
+   * Adds all non-capturing moves including promotions. Castling moves are
+   * only added if castling is true, which must not be the case in check.
+   */
+  void addQuiets(@NotNull MoveList<MoveEntry> list,
+      @NotNull Position position, boolean castling) {
+    int activeColor = position.activeColor;
+
+    for (long squares = position.pieces[activeColor][PAWN].squares;
+        squares != 0; squares = remainder(squares)) {
+      addPawnPushes(list, next(squares), position);
+    }
+
+    addPieceMoves(list, ~position.occupied.squares, position);
+
+    if (castling) {
+      addCastlingMoves(list,
+          next(position.pieces[activeColor][KING].squares), position);
+    }
+  }
+
+  /**
+   * Adds the moves of all pieces except pawns to the target squares.
+   */
+  private void addPieceMoves(@NotNull MoveList<MoveEntry> list, long targets,
+      @NotNull Position position) {
+    int activeColor = position.activeColor;
+    long occupied = position.occupied.squares;
+
     for (long squares = position.pieces[activeColor][KNIGHT].squares;
         squares != 0; squares = remainder(squares)) {
       int square = next(squares);
-      addMoves(list, square, knightDirections, position);
+      addMoves(list, square, Attacks.knight(square) & targets, position);
     }
 
     for (long squares = position.pieces[activeColor][BISHOP].squares;
         squares != 0; squares = remainder(squares)) {
       int square = next(squares);
-      addMoves(list, square, bishopDirections, position);
+      addMoves(list, square, Attacks.bishop(square, occupied) & targets,
+          position);
     }
 
     for (long squares = position.pieces[activeColor][ROOK].squares;
         squares != 0; squares = remainder(squares)) {
       int square = next(squares);
-      addMoves(list, square, rookDirections, position);
+      addMoves(list, square, Attacks.rook(square, occupied) & targets,
+          position);
     }
 
     for (long squares = position.pieces[activeColor][QUEEN].squares;
         squares != 0; squares = remainder(squares)) {
       int square = next(squares);
-      addMoves(list, square, queenDirections, position);
+      addMoves(list, square, Attacks.queen(square, occupied) & targets,
+          position);
     }
 
     int square = next(position.pieces[activeColor][KING].squares);
-    addMoves(list, square, kingDirections, position);
+    addMoves(list, square, Attacks.king(square) & targets, position);
   }
 
+  /**
+   * Adds a move from the originSquare to every target square. The target
+   * squares must not contain pieces of our own color.
+   */
   private void addMoves(@NotNull MoveList<MoveEntry> list, int originSquare,
-      @NotNull int[] directions, @NotNull Position position) {
+      long targetSquares, @NotNull Position position) {
     int originPiece = position.board[originSquare];
-    boolean sliding = isSliding(Piece.getType(originPiece));
-    int oppositeColor = opposite(Piece.getColor(originPiece));
-
-    // Go through all move directions for this piece
-    for (int direction : directions) {
-      int targetSquare = originSquare + direction;
 
-      // Check if we're still on the board
-      while (Square.isValid(targetSquare)) {
-        int targetPiece = position.board[targetSquare];
+    for (long squares = targetSquares; squares != 0;
+        squares = remainder(squares)) {
+      int targetSquare = next(squares);
 
-        if (targetPiece == NOPIECE) {
-          // quiet move
-          list.entries[list.size++].move = Move.valueOf(NORMAL, originSquare,
-              targetSquare, originPiece, NOPIECE, NOPIECETYPE);
-
-          if (!sliding) {
-            break;
-          }
-          targetSquare += direction;
-        } else {
-          if (Piece.getColor(targetPiece) == oppositeColor) {
-            // capturing move
-            list.entries[list.size++].move = Move.valueOf(NORMAL, originSquare,
-                targetSquare, originPiece, targetPiece, NOPIECETYPE);
-          }
-
-          break;
-        }
-      }
+      // This is either a quiet move or a capturing move
+      list.entries[list.size++].move = Move.valueOf(NORMAL, originSquare,
+          targetSquare, originPiece, position.board[targetSquare],
+          NOPIECETYPE);
     }
   }
 
-  private void addPawnMoves(@NotNull MoveList<MoveEntry> list, int pawnSquare,
-      @NotNull Position position) {
+  private void addPawnCaptures(@NotNull MoveList<MoveEntry> list,
+      int pawnSquare, @NotNull Position position) {
     int pawnPiece = position.board[pawnSquare];
     int pawnColor = Piece.getColor(pawnPiece);
 
-    // Generate only capturing moves first (i = 1)
-    for (int i = 1; i < pawnDirections[pawnColor].length; ++i) {
-      int direction = pawnDirections[pawnColor][i];
-
-      int targetSquare = pawnSquare + direction;
-      if (Square.isValid(targetSquare)) {
-        int targetPiece = position.board[targetSquare];
-
-        if (targetPiece != NOPIECE) {
-          if (Piece.getColor(targetPiece) == opposite(pawnColor)) {
-            // Capturing move
-
-            if ((pawnColor == WHITE && Square.getRank(targetSquare) == r8)
-                || (pawnColor == BLACK && Square.getRank(targetSquare) == r1)) {
-              // Pawn promotion capturing move
-              list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
-                  pawnSquare, targetSquare, pawnPiece, targetPiece, QUEEN);
-              list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
-                  pawnSquare, targetSquare, pawnPiece, targetPiece, ROOK);
-              list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
-                  pawnSquare, targetSquare, pawnPiece, targetPiece, BISHOP);
-              list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
-                  pawnSquare, targetSquare, pawnPiece, targetPiece, KNIGHT);
-            } else {
-              // Normal capturing move
-
-              list.entries[list.size++].move = Move.valueOf(NORMAL, pawnSquare,
-                  targetSquare, pawnPiece, targetPiece, NOPIECETYPE);
-            }
-          }
-        } else if (targetSquare == position.enPassantSquare) {
-          // En passant move
-          int captureSquare = targetSquare + (pawnColor == WHITE ? S : N);
-          targetPiece = position.board[captureSquare];
+    long attacks = Attacks.pawn(pawnColor, pawnSquare);
+    long captures = attacks & position.occupancy[opposite(pawnColor)].squares;
+    for (long squares = captures;
+        squares != 0; squares = remainder(squares)) {
+      int targetSquare = next(squares);
+      int targetPiece = position.board[targetSquare];
 
-          list.entries[list.size++].move = Move.valueOf(ENPASSANT, pawnSquare,
-              targetSquare, pawnPiece, targetPiece, NOPIECETYPE);
-        }
+      if ((pawnColor == WHITE && Square.getRank(targetSquare) == r8)
+          || (pawnColor == BLACK && Square.getRank(targetSquare) == r1)) {
+        // Pawn promotion capturing move
+        list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
+            pawnSquare, targetSquare, pawnPiece, targetPiece, QUEEN);
+        list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
+            pawnSquare, targetSquare, pawnPiece, targetPiece, ROOK);
+        list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
+            pawnSquare, targetSquare, pawnPiece, targetPiece, BISHOP);
+        list.entries[list.size++].move = Move.valueOf(PAWNPROMOTION,
+            pawnSquare, targetSquare, pawnPiece, targetPiece, KNIGHT);
+      } else {
+        // Normal capturing move
+
+        list.entries[list.size++].move = Move.valueOf(NORMAL, pawnSquare,
+            targetSquare, pawnPiece, targetPiece, NOPIECETYPE);
       }
     }
 
-    // Generate non-capturing moves
+    int enPassantSquare = position.enPassantSquare;
+    if (enPassantSquare != NOSQUARE
+        && (attacks & Bitboard.valueOf(enPassantSquare)) != 0) {
+      // En passant move
+      int captureSquare = enPassantSquare + (pawnColor == WHITE ? S : N);
+      int targetPiece = position.board[captureSquare];
+
+      list.entries[list.size++].move = Move.valueOf(ENPASSANT, pawnSquare,
+          enPassantSquare, pawnPiece, targetPiece, NOPIECETYPE);
+    }
+  }
+
+  private void addPawnPushes(@NotNull MoveList<MoveEntry> list,
+      int pawnSquare, @NotNull Position position) {
+    int pawnPiece = position.board[pawnSquare];
+    int pawnColor = Piece.getColor(pawnPiece);
+
     int direction = pawnDirections[pawnColor][0];
 
     // Move one rank forward
@@ -283,44 +297,126 @@ final class MoveGenerator {
 
   private void addCastlingMoves(@NotNull MoveList<MoveEntry> list,
       int kingSquare, @NotNull Position position) {
-    int kingPiece = position.board[kingSquare];
-
-    if (Piece.getColor(kingPiece) == WHITE) {
-      // Do not test g1 whether it is attacked as we will test it in isLegal()
-      if ((position.castlingRights & WHITE_KINGSIDE) != NOCASTLING
-          && position.board[f1] == NOPIECE
-          && position.board[g1] == NOPIECE
-          && !position.isAttacked(f1, BLACK)) {
-        list.entries[list.size++].move = Move.valueOf(CASTLING, kingSquare, g1,
-            kingPiece, NOPIECE, NOPIECETYPE);
-      }
-      // Do not test c1 whether it is attacked as we will test it in isLegal()
-      if ((position.castlingRights & WHITE_QUEENSIDE) != NOCASTLING
-          && position.board[b1] == NOPIECE
-          && position.board[c1] == NOPIECE
-          && position.board[d1] == NOPIECE
-          && !position.isAttacked(d1, BLACK)) {
-        list.entries[list.size++].move = Move.valueOf(CASTLING, kingSquare, c1,
-            kingPiece, NOPIECE, NOPIECETYPE);
-      }
+    if (position.activeColor == WHITE) {
+      addCastlingMove(list, kingSquare, g1, position);
+      addCastlingMove(list, kingSquare, c1, position);
     } else {
-      // Do not test g8 whether it is attacked as we will test it in isLegal()
-      if ((position.castlingRights & BLACK_KINGSIDE) != NOCASTLING
-          && position.board[f8] == NOPIECE
-          && position.board[g8] == NOPIECE
-          && !position.isAttacked(f8, WHITE)) {
-        list.entries[list.size++].move = Move.valueOf(CASTLING, kingSquare, g8,
-            kingPiece, NOPIECE, NOPIECETYPE);
-      }
-      // Do not test c8 whether it is attacked as we will test it in isLegal()
-      if ((position.castlingRights & BLACK_QUEENSIDE) != NOCASTLING
-          && position.board[b8] == NOPIECE
-          && position.board[c8] == NOPIECE
-          && position.board[d8] == NOPIECE
-          && !position.isAttacked(d8, WHITE)) {
-        list.entries[list.size++].move = Move.valueOf(CASTLING, kingSquare, c8,
-            kingPiece, NOPIECE, NOPIECETYPE);
-      }
+      addCastlingMove(list, kingSquare, g8, position);
+      addCastlingMove(list, kingSquare, c8, position);
+    }
+  }
+
+  private void addCastlingMove(@NotNull MoveList<MoveEntry> list,
+      int kingSquare, int targetSquare, @NotNull Position position) {
+    if (canCastle(position, targetSquare)) {
+      list.entries[list.size++].move = Move.valueOf(CASTLING, kingSquare,
+          targetSquare, position.board[kingSquare], NOPIECE, NOPIECETYPE);
+    }
+  }
+
+  /**
+   * Returns whether the king can castle to the target square if it is not
+   * in check. We do not test the target square whether it is attacked, as
+   * we will test it after making the move.
+   */
+  private static boolean canCastle(@NotNull Position position,
+      int targetSquare) {
+    int[] board = position.board;
+    int castlingRights = position.castlingRights;
+
+    switch (targetSquare) {
+      case g1:
+        return (castlingRights & WHITE_KINGSIDE) != NOCASTLING
+            && board[f1] == NOPIECE
+            && board[g1] == NOPIECE
+            && !position.isAttacked(f1, BLACK);
+      case c1:
+        return (castlingRights & WHITE_QUEENSIDE) != NOCASTLING
+            && board[b1] == NOPIECE
+            && board[c1] == NOPIECE
+            && board[d1] == NOPIECE
+            && !position.isAttacked(d1, BLACK);
+      case g8:
+        return (castlingRights & BLACK_KINGSIDE) != NOCASTLING
+            && board[f8] == NOPIECE
+            && board[g8] == NOPIECE
+            && !position.isAttacked(f8, WHITE);
+      case c8:
+        return (castlingRights & BLACK_QUEENSIDE) != NOCASTLING
+            && board[b8] == NOPIECE
+            && board[c8] == NOPIECE
+            && board[d8] == NOPIECE
+            && !position.isAttacked(d8, WHITE);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns whether the move could be generated in the position. We use it
+   * to check moves from other positions, like the hash move or killer moves,
+   * before we make them. Like all generated moves the move may still leave
+   * our king in check.
+   */
+  static boolean isPseudoLegal(@NotNull Position position, int move,
+      boolean isCheck) {
+    if (move == NOMOVE) {
+      return false;
+    }
+
+    int type = Move.getType(move);
+    int originSquare = Move.getOriginSquare(move);
+    int targetSquare = Move.getTargetSquare(move);
+    int originPiece = Move.getOriginPiece(move);
+    int targetPiece = Move.getTargetPiece(move);
+    int activeColor = position.activeColor;
+
+    if (Piece.getColor(originPiece) != activeColor
+        || position.board[originSquare] != originPiece) {
+      return false;
+    }
+
+    switch (type) {
+      case ENPASSANT:
+        return targetSquare == position.enPassantSquare
+            && (Attacks.pawn(activeColor, originSquare)
+            & Bitboard.valueOf(targetSquare)) != 0;
+      case CASTLING:
+        return !isCheck && canCastle(position, targetSquare);
+      case PAWNDOUBLE:
+        return position.board[originSquare
+            + pawnDirections[activeColor][0]] == NOPIECE
+            && position.board[targetSquare] == NOPIECE;
+      default:
+        break;
+    }
+
+    // This is a normal move or a promotion
+    if (position.board[targetSquare] != targetPiece) {
+      return false;
+    }
+
+    long target = Bitboard.valueOf(targetSquare);
+    long occupied = position.occupied.squares;
+    switch (Piece.getType(originPiece)) {
+      case PAWN:
+        if (targetPiece == NOPIECE) {
+          return targetSquare == originSquare + pawnDirections[activeColor][0];
+        } else {
+          return (Attacks.pawn(activeColor, originSquare) & target) != 0;
+        }
+      case KNIGHT:
+        return (Attacks.knight(originSquare) & target) != 0;
+      case BISHOP:
+        return (Attacks.bishop(originSquare, occupied) & target) != 0;
+      case ROOK:
+        return (Attacks.rook(originSquare, occupied) & target) != 0;
+      case QUEEN:
+        return (Attacks.queen(originSquare, occupied) & target) != 0;
+      case KING:
+        return (Attacks.king(originSquare) & target) != 0;
+      default:
+        throw new IllegalArgumentException();
     }
   }
 }
@@ -10,6 +10,7 @@ package com.hayanige.chess;
 import static com.hayanige.chess.Depth.MAX_PLY;
 import static com.hayanige.chess.Move.NOMOVE;
 import static com.hayanige.chess.PieceType.KING_VALUE;
+import static com.hayanige.chess.TranspositionTable.EXACT;
 import static com.hayanige.chess.Value.NOVALUE;
 
 import java.lang.reflect.Array;
@@ -40,6 +41,12 @@ final class MoveList<T extends MoveList.MoveEntry> {
   static final class RootEntry extends MoveEntry {
 
     final MoveVariation pv = new MoveVariation();
+
+    // Whether the value is exact or only a bound of an aspiration window
+    int bound = EXACT;
+
+    // The nodes we searched for the move in the last iteration
+    long nodes = 0;
   }
 
   MoveList(Class<T> clazz) {
@@ -94,4 +101,16 @@ final class MoveList<T extends MoveList.MoveEntry> {
       entries[i].value = value;
     }
   }
+
+  /**
+   * Rates the hash move above all other moves.
+   */
+  void rateHashMove(int hashMove) {
+    for (int i = 0; i < size; i++) {
+      if (entries[i].move == hashMove) {
+        entries[i].value = Integer.MAX_VALUE;
+        break;
+      }
+    }
+  }
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Move.NOMOVE;
+import static com.hayanige.chess.Piece.NOPIECE;
+
+import com.hayanige.chess.MoveList.MoveEntry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class returns the moves of a position one by one in stages. Most
+ * nodes are cut off after the first few moves, so we generate moves only
+ * when we need them and select the best remaining move instead of sorting
+ * the whole list.
+ *
+ * 1. the hash move
+ * 2. good captures by MVV/LVA
+ * 3. killer moves
+ * 4. the counter move
+ * 5. quiet moves by history
+ * 6. bad captures
+ *
+ * A capture is bad if it loses material according to the static exchange
+ * evaluation. In quiescent search we only return good captures, unless we
+ * are in check.
+ */
+final class MovePicker {
+
+  // Stages
+  private static final int HASH = 0;
+  private static final int GENERATE_CAPTURES = 1;
+  private static final int CAPTURES = 2;
+  private static final int KILLER1 = 3;
+  private static final int KILLER2 = 4;
+  private static final int COUNTER_MOVE = 5;
+  private static final int GENERATE_QUIETS = 6;
+  private static final int QUIETS = 7;
+  private static final int BAD_CAPTURES = 8;
+  private static final int DONE = 9;
+
+  private final MoveGenerator moveGenerator = new MoveGenerator();
+  private final History history;
+  private final MoveList<MoveEntry> moves = new MoveList<>(MoveEntry.class);
+  private final MoveList<MoveEntry> badCaptures =
+      new MoveList<>(MoveEntry.class);
+
+  private Position position;
+  private boolean isCheck;
+  private boolean quiescent;
+  private int hashMove;
+  private int killer1;
+  private int killer2;
+  private int counterMove;
+
+  private int stage = DONE;
+  private int index;
+
+  MovePicker(@NotNull History history) {
+    this.history = history;
+  }
+
+  /**
+   * Prepares the picker for a new position.
+   *
+   * @param depth the depth, quiescent search if depth <= 0.
+   * @param killer1 the first killer move or NOMOVE.
+   * @param killer2 the second killer move or NOMOVE.
+   * @param counterMove the counter move of the previous move or NOMOVE.
+   */
+  void init(@NotNull Position position, int depth, boolean isCheck,
+      int hashMove, int killer1, int killer2, int counterMove) {
+    this.position = position;
+    this.isCheck = isCheck;
+    this.quiescent = depth <= 0 && !isCheck;
+    this.killer1 = killer1;
+    this.killer2 = killer2;
+    this.counterMove = counterMove;
+
+    // In quiescent search the hash move must be a capture as well
+    if (MoveGenerator.isPseudoLegal(position, hashMove, isCheck)
+        && !(quiescent && !isCapture(hashMove))) {
+      this.hashMove = hashMove;
+    } else {
+      this.hashMove = NOMOVE;
+    }
+
+    stage = HASH;
+  }
+
+  /**
+   * Returns the next move or NOMOVE if there are no more moves.
+   */
+  int next() {
+    while (true) {
+      switch (stage) {
+        case HASH:
+          stage = GENERATE_CAPTURES;
+          if (hashMove != NOMOVE) {
+            return hashMove;
+          }
+          break;
+        case GENERATE_CAPTURES:
+          moves.size = 0;
+          moveGenerator.addCaptures(moves, position);
+          moves.rateFromMVVLVA();
+          index = 0;
+          badCaptures.size = 0;
+          stage = CAPTURES;
+          break;
+        case CAPTURES:
+          while (index < moves.size) {
+            int move = pickBest();
+            if (move == hashMove) {
+              continue;
+            }
+            if (isGoodCapture(move)) {
+              return move;
+            }
+
+            // Bad captures are tried last or pruned in quiescent search
+            if (!quiescent) {
+              badCaptures.entries[badCaptures.size++].move = move;
+            }
+          }
+          stage = quiescent ? DONE : KILLER1;
+          break;
+        case KILLER1:
+          stage = KILLER2;
+          if (isQuiet(killer1)) {
+            return killer1;
+          }
+          break;
+        case KILLER2:
+          stage = COUNTER_MOVE;
+          if (killer2 != killer1 && isQuiet(killer2)) {
+            return killer2;
+          }
+          break;
+        case COUNTER_MOVE:
+          stage = GENERATE_QUIETS;
+          if (counterMove != killer1 && counterMove != killer2
+              && isQuiet(counterMove)) {
+            return counterMove;
+          }
+          break;
+        case GENERATE_QUIETS:
+          moves.size = 0;
+          moveGenerator.addQuiets(moves, position, !isCheck);
+          for (int i = 0; i < moves.size; ++i) {
+            moves.entries[i].value = history.get(moves.entries[i].move);
+          }
+          index = 0;
+          stage = QUIETS;
+          break;
+        case QUIETS:
+          while (index < moves.size) {
+            int move = pickBest();
+            if (move != hashMove && move != killer1 && move != killer2
+                && move != counterMove) {
+              return move;
+            }
+          }
+          index = 0;
+          stage = BAD_CAPTURES;
+          break;
+        case BAD_CAPTURES:
+          if (index < badCaptures.size) {
+            return badCaptures.entries[index++].move;
+          }
+          stage = DONE;
+          break;
+        case DONE:
+          return NOMOVE;
+        default:
+          throw new IllegalStateException();
+      }
+    }
+  }
+
+  /**
+   * Moves the best remaining move to the current index and returns it.
+   */
+  private int pickBest() {
+    MoveEntry[] entries = moves.entries;
+
+    int best = index;
+    for (int i = index + 1; i < moves.size; ++i) {
+      if (entries[i].value > entries[best].value) {
+        best = i;
+      }
+    }
+
+    MoveEntry entry = entries[best];
+    entries[best] = entries[index];
+    entries[index] = entry;
+    ++index;
+
+    return entry.move;
+  }
+
+  /**
+   * Returns whether the capture does not lose material. Capturing a piece
+   * which is worth at least as much as the capturing piece never does, so
+   * we only need the static exchange evaluation for the other captures.
+   */
+  private boolean isGoodCapture(int move) {
+    int targetPiece = Move.getTargetPiece(move);
+    if (targetPiece != NOPIECE
+        && PieceType.getValue(Piece.getType(targetPiece))
+        >= PieceType.getValue(Piece.getType(Move.getOriginPiece(move)))) {
+      return true;
+    }
+
+    return position.see(move) >= 0;
+  }
+
+  /**
+   * Returns whether the killer or counter move is a quiet move we may return
+   * before generating the quiet moves.
+   */
+  private boolean isQuiet(int move) {
+    return move != hashMove
+        && MoveGenerator.isPseudoLegal(position, move, isCheck)
+        && !isCapture(move);
+  }
+
+  static boolean isCapture(int move) {
+    return Move.getTargetPiece(move) != NOPIECE;
+  }
+}
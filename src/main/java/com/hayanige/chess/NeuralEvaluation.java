@@ -6,6 +6,7 @@
  */
 package com.hayanige.chess;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.hayanige.chess.Color.BLACK;
 import static com.hayanige.chess.Square.a1;
 import static com.hayanige.chess.Square.a2;
@@ -72,21 +73,75 @@ import static com.hayanige.chess.Square.h6;
 import static com.hayanige.chess.Square.h7;
 import static com.hayanige.chess.Square.h8;
 
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.util.ModelSerializer;
 import org.jetbrains.annotations.NotNull;
+import org.nd4j.linalg.activations.IActivation;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+/**
+ * This evaluation uses a neural network of dense layers trained with
+ * DL4J. Instead of calling MultiLayerNetwork.output() we do the forward pass
+ * ourselves on preallocated buffers, so we don't create any objects during
+ * the search. The result is the same as the result of output().
+ */
 final class NeuralEvaluation extends Evaluation {
 
+  static final int FEATURES = 65;
+
   MultiLayerNetwork model = null;
 
+  // The parameters of all layers. We only read them, so all search threads
+  // can share them.
+  private final INDArray[] weights;
+  private final INDArray[] biases;
+  private final IActivation[] activations;
+
+  // Every search thread gets its own buffers
+  private final ThreadLocal<Buffers> buffers =
+      ThreadLocal.withInitial(Buffers::new);
+
+  private final class Buffers {
+
+    private final float[] features = new float[FEATURES];
+    private final INDArray input = Nd4j.create(1, FEATURES);
+    private final INDArray[] outputs = createOutputs(1);
+  }
+
   NeuralEvaluation(String path) {
+    this(restoreModel(path));
+  }
+
+  NeuralEvaluation(@NotNull MultiLayerNetwork model) {
+    this.model = model;
+
+    Layer[] layers = model.getLayers();
+    weights = new INDArray[layers.length];
+    biases = new INDArray[layers.length];
+    activations = new IActivation[layers.length];
+    for (int i = 0; i < layers.length; ++i) {
+      org.deeplearning4j.nn.conf.layers.Layer conf =
+          layers[i].conf().getLayer();
+      checkArgument(conf instanceof DenseLayer || conf instanceof OutputLayer,
+          "Only dense layers are supported");
+
+      weights[i] = layers[i].getParam("W");
+      biases[i] = layers[i].getParam("b");
+      activations[i] = conf.getActivationFn();
+    }
+  }
+
+  private static MultiLayerNetwork restoreModel(String path) {
     java.io.File locationToSave = new java.io.File(path);
     try {
-      model = ModelSerializer.restoreMultiLayerNetwork(locationToSave);
-    } catch (Exception e) {}
+      return ModelSerializer.restoreMultiLayerNetwork(locationToSave);
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Cannot load model " + path, e);
+    }
   }
 
   /**
@@ -96,9 +151,58 @@ final class NeuralEvaluation extends Evaluation {
    * @return the evaluation value in centipawns.
    */
   int evaluate(@NotNull Position position) {
+    Buffers buffer = buffers.get();
+
+    getFeatures(position, buffer.features);
+    for (int i = 0; i < FEATURES; ++i) {
+      buffer.input.putScalar(i, buffer.features[i]);
+    }
+
+    int value = (int) output(buffer.input, buffer.outputs).getDouble(0);
 
-    double[] positionFeatures = new double[65];
+    if (position.activeColor == BLACK) {
+      value = -value;
+    }
+
+    return value;
+  }
 
+  /**
+   * Creates the layer outputs for a batch of positions.
+   */
+  INDArray[] createOutputs(int rows) {
+    INDArray[] outputs = new INDArray[weights.length];
+    for (int i = 0; i < outputs.length; ++i) {
+      outputs[i] = Nd4j.create(rows, weights[i].columns());
+    }
+
+    return outputs;
+  }
+
+  /**
+   * Feeds every row of the input through all layers and returns the output
+   * of the last layer. The values are from the perspective of white.
+   *
+   * @param input the features of the positions, one row per position.
+   * @param outputs the layer outputs created by createOutputs().
+   */
+  INDArray output(@NotNull INDArray input, @NotNull INDArray[] outputs) {
+    for (int i = 0; i < weights.length; ++i) {
+      INDArray output = outputs[i];
+      input.mmuli(weights[i], output);
+      output.addiRowVector(biases[i]);
+      activations[i].getActivation(output, false);
+      input = output;
+    }
+
+    return input;
+  }
+
+  /**
+   * Writes the input features of the position into positionFeatures.
+   */
+  static void getFeatures(@NotNull Position position,
+      @NotNull float[] positionFeatures) {
     // add board features
     positionFeatures[0] =  position.board[a1];
     positionFeatures[1] =  position.board[b1];
@@ -167,15 +271,5 @@ final class NeuralEvaluation extends Evaluation {
 
     // add active color feature
     positionFeatures[64] = position.activeColor;
-
-    INDArray posArray = Nd4j.create(positionFeatures);
-
-    int value = (int) model.output(posArray, false).getDouble(0);
-
-    if (position.activeColor == BLACK) {
-      value = -value;
-    }
-
-    return value;
   }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class holds a stack of NNUE accumulators for a position. Making a
+ * move pushes a copy of the current accumulator, which is then updated by
+ * Position.put() and Position.remove(). Undoing a move simply pops it.
+ */
+final class NnueAccumulator {
+
+  final NnueNetwork network;
+
+  private final short[][] stack = new short[Position.MAX_MOVES + 1][];
+  private int index = 0;
+
+  NnueAccumulator(@NotNull NnueNetwork network, @NotNull Position position) {
+    this.network = network;
+
+    stack[0] = new short[2 * network.hidden];
+    network.refresh(position, stack[0]);
+  }
+
+  /**
+   * Computes the accumulator of the position from scratch and drops the
+   * accumulators of the previous moves.
+   */
+  void refresh(@NotNull Position position) {
+    index = 0;
+    network.refresh(position, stack[0]);
+  }
+
+  short[] get() {
+    return stack[index];
+  }
+
+  void push() {
+    short[] accumulator = stack[index + 1];
+    if (accumulator == null) {
+      accumulator = new short[2 * network.hidden];
+      stack[index + 1] = accumulator;
+    }
+
+    System.arraycopy(stack[index], 0, accumulator, 0, accumulator.length);
+    ++index;
+  }
+
+  /**
+   * Returns to the previous accumulator. If the accumulator was attached
+   * after the move, there is no previous one on the stack and we compute it
+   * from the position, which must already be restored.
+   */
+  void pop(@NotNull Position position) {
+    if (index == 0) {
+      network.refresh(position, stack[0]);
+    } else {
+      --index;
+    }
+  }
+
+  void add(int piece, int square) {
+    network.add(stack[index], piece, square);
+  }
+
+  void remove(int piece, int square) {
+    network.remove(stack[index], piece, square);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This evaluation uses an NnueNetwork. The search attaches an accumulator to
+ * the root position of every thread. From then on the position keeps the
+ * accumulator up to date, so we only have to evaluate the small head.
+ */
+final class NnueEvaluation extends Evaluation {
+
+  private final NnueNetwork network;
+
+  NnueEvaluation(String path) throws IOException {
+    this(NnueNetwork.read(path));
+  }
+
+  NnueEvaluation(@NotNull NnueNetwork network) {
+    this.network = network;
+  }
+
+  /**
+   * Attaches an accumulator to the position or refreshes the attached one,
+   * so the bottom of its stack belongs to the root.
+   */
+  @Override
+  void prepare(@NotNull Position position) {
+    NnueAccumulator accumulator = position.accumulator;
+    if (accumulator == null || accumulator.network != network) {
+      position.accumulator = new NnueAccumulator(network, position);
+    } else {
+      accumulator.refresh(position);
+    }
+  }
+
+  /**
+   * Evaluates the position. A position which was not prepared gets an
+   * accumulator the first time.
+   *
+   * @param position the position.
+   * @return the evaluation value in centipawns.
+   */
+  int evaluate(@NotNull Position position) {
+    NnueAccumulator accumulator = position.accumulator;
+    if (accumulator == null || accumulator.network != network) {
+      prepare(position);
+      accumulator = position.accumulator;
+    }
+
+    return network.evaluate(accumulator.get(), position.activeColor);
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.hayanige.chess.Color.BLACK;
+import static com.hayanige.chess.Color.WHITE;
+import static com.hayanige.chess.Piece.NOPIECE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class is an efficiently updatable neural network. The first layer
+ * has one input for every piece on every square, seen from both colors. Its
+ * output, the accumulator, only changes a little with every move, so
+ * NnueAccumulator updates it incrementally. A small head turns the
+ * accumulator into the evaluation.
+ *
+ * All weights are quantized to 16 bit integers. Activations are scaled by QA
+ * and clipped to [0, QA], head weights are scaled by QB.
+ *
+ * The file contains the following big-endian values.
+ *
+ * int     : MAGIC
+ * int     : hidden size H of one accumulator half
+ * int     : head size L
+ * int     : output scale
+ * short[] : feature weights, H for every feature
+ * short[] : feature biases, H
+ * short[] : head weights, 2H for every head unit
+ * int[]   : head biases, L
+ * short[] : output weights, L
+ * int     : output bias
+ */
+final class NnueNetwork {
+
+  static final int MAGIC = 0x45454E32;
+
+  static final int FEATURES = 2 * 6 * 64;
+
+  static final int QA = 255;
+  static final int QB = 64;
+
+  final int hidden;
+  final int head;
+  final int outputScale;
+
+  private final short[] featureWeights;
+  private final short[] featureBiases;
+  private final short[] headWeights;
+  private final int[] headBiases;
+  private final short[] outputWeights;
+  private final int outputBias;
+
+  NnueNetwork(int hidden, int head, int outputScale,
+      @NotNull short[] featureWeights, @NotNull short[] featureBiases,
+      @NotNull short[] headWeights, @NotNull int[] headBiases,
+      @NotNull short[] outputWeights, int outputBias) {
+    checkArgument(hidden >= 1 && head >= 1);
+    checkArgument(featureWeights.length == FEATURES * hidden);
+    checkArgument(featureBiases.length == hidden);
+    checkArgument(headWeights.length == 2 * hidden * head);
+    checkArgument(headBiases.length == head);
+    checkArgument(outputWeights.length == head);
+
+    this.hidden = hidden;
+    this.head = head;
+    this.outputScale = outputScale;
+    this.featureWeights = featureWeights;
+    this.featureBiases = featureBiases;
+    this.headWeights = headWeights;
+    this.headBiases = headBiases;
+    this.outputWeights = outputWeights;
+    this.outputBias = outputBias;
+  }
+
+  static NnueNetwork read(@NotNull String path) throws IOException {
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(path)))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not an NNUE file: " + path);
+      }
+
+      int hidden = input.readInt();
+      int head = input.readInt();
+      int outputScale = input.readInt();
+
+      short[] featureWeights = readShorts(input, FEATURES * hidden);
+      short[] featureBiases = readShorts(input, hidden);
+      short[] headWeights = readShorts(input, 2 * hidden * head);
+      int[] headBiases = new int[head];
+      for (int i = 0; i < head; ++i) {
+        headBiases[i] = input.readInt();
+      }
+      short[] outputWeights = readShorts(input, head);
+      int outputBias = input.readInt();
+
+      return new NnueNetwork(hidden, head, outputScale, featureWeights,
+          featureBiases, headWeights, headBiases, outputWeights, outputBias);
+    }
+  }
+
+  void write(@NotNull String path) throws IOException {
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(path)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(hidden);
+      output.writeInt(head);
+      output.writeInt(outputScale);
+
+      writeShorts(output, featureWeights);
+      writeShorts(output, featureBiases);
+      writeShorts(output, headWeights);
+      for (int headBias : headBiases) {
+        output.writeInt(headBias);
+      }
+      writeShorts(output, outputWeights);
+      output.writeInt(outputBias);
+    }
+  }
+
+  private static short[] readShorts(@NotNull DataInputStream input, int size)
+      throws IOException {
+    short[] values = new short[size];
+    for (int i = 0; i < size; ++i) {
+      values[i] = input.readShort();
+    }
+
+    return values;
+  }
+
+  private static void writeShorts(@NotNull DataOutputStream output,
+      @NotNull short[] values) throws IOException {
+    for (short value : values) {
+      output.writeShort(value);
+    }
+  }
+
+  /**
+   * Returns the feature of the piece on the square seen from the
+   * perspective. Black sees the board flipped, so both colors see their own
+   * pieces the same way.
+   */
+  static int getFeature(int perspective, int piece, int square) {
+    int index = Bitboard.toBitSquare(square);
+    if (perspective == BLACK) {
+      index ^= 56;
+    }
+
+    int pieceIndex = Piece.getType(piece);
+    if (Piece.getColor(piece) != perspective) {
+      pieceIndex += 6;
+    }
+
+    return pieceIndex * 64 + index;
+  }
+
+  /**
+   * Computes the accumulator of the position from scratch. The first half
+   * is seen from white, the second half from black.
+   */
+  void refresh(@NotNull Position position, @NotNull short[] accumulator) {
+    System.arraycopy(featureBiases, 0, accumulator, 0, hidden);
+    System.arraycopy(featureBiases, 0, accumulator, hidden, hidden);
+
+    for (int square : Square.values) {
+      int piece = position.board[square];
+      if (piece != NOPIECE) {
+        add(accumulator, piece, square);
+      }
+    }
+  }
+
+  void add(@NotNull short[] accumulator, int piece, int square) {
+    int white = getFeature(WHITE, piece, square) * hidden;
+    int black = getFeature(BLACK, piece, square) * hidden;
+    for (int i = 0; i < hidden; ++i) {
+      accumulator[i] += featureWeights[white + i];
+      accumulator[hidden + i] += featureWeights[black + i];
+    }
+  }
+
+  void remove(@NotNull short[] accumulator, int piece, int square) {
+    int white = getFeature(WHITE, piece, square) * hidden;
+    int black = getFeature(BLACK, piece, square) * hidden;
+    for (int i = 0; i < hidden; ++i) {
+      accumulator[i] -= featureWeights[white + i];
+      accumulator[hidden + i] -= featureWeights[black + i];
+    }
+  }
+
+  /**
+   * Evaluates the accumulator from the perspective of the active color.
+   *
+   * @return the evaluation value in centipawns.
+   */
+  int evaluate(@NotNull short[] accumulator, int activeColor) {
+    // Our half comes first
+    int ours = activeColor == WHITE ? 0 : hidden;
+    int theirs = hidden - ours;
+
+    long output = outputBias;
+    for (int unit = 0, row = 0; unit < head; ++unit, row += 2 * hidden) {
+      int sum = headBiases[unit];
+      for (int i = 0; i < hidden; ++i) {
+        sum += clip(accumulator[ours + i]) * headWeights[row + i];
+        sum += clip(accumulator[theirs + i]) * headWeights[row + hidden + i];
+      }
+
+      output += (long) clip(sum / QB) * outputWeights[unit];
+    }
+
+    return (int) (output * outputScale / (QA * QB));
+  }
+
+  private static int clip(int value) {
+    return value < 0 ? 0 : (value > QA ? QA : value);
+  }
+}
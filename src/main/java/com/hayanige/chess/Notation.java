@@ -207,6 +207,25 @@ final class Notation {
     }
   }
 
+  static int toPieceType(@NotNull GenericChessman genericChessman) {
+    switch (genericChessman) {
+      case PAWN:
+        return PAWN;
+      case KNIGHT:
+        return KNIGHT;
+      case BISHOP:
+        return BISHOP;
+      case ROOK:
+        return ROOK;
+      case QUEEN:
+        return QUEEN;
+      case KING:
+        return KING;
+      default:
+        throw new IllegalArgumentException();
+    }
+  }
+
   static GenericChessman fromPieceType(int pieceType) {
     switch (pieceType) {
       case PAWN:
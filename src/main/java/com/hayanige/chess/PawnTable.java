@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+/**
+ * This class caches the pawn structure value by the pawn zobrist key of the
+ * position.
+ */
+final class PawnTable {
+
+  static final int DEFAULT_SIZE = 1;
+
+  static final int NOENTRY = IntTable.NOENTRY;
+
+  private final IntTable table;
+
+  PawnTable(int megabytes) {
+    table = new IntTable(megabytes);
+  }
+
+  /**
+   * Returns the value stored for the pawnZobristKey or NOENTRY if there is no
+   * such entry.
+   */
+  int probe(long pawnZobristKey) {
+    return table.probe(pawnZobristKey);
+  }
+
+  void store(long pawnZobristKey, int value) {
+    table.store(pawnZobristKey, value);
+  }
+}
@@ -8,7 +8,12 @@
 
 package com.hayanige.chess;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.hayanige.chess.Bitboard.next;
 import static com.hayanige.chess.Color.opposite;
+import static com.hayanige.chess.MoveType.ENPASSANT;
+import static com.hayanige.chess.PieceType.KING;
+import static java.lang.Math.max;
 import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -16,26 +21,90 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.hayanige.chess.MoveList.MoveEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import org.jetbrains.annotations.NotNull;
 
+/**
+ * This class counts the leaf nodes of the move tree up to a given depth. The
+ * subtrees of the root moves are counted in parallel on a ForkJoinPool. Deep
+ * subtrees are split further, so the work is spread evenly over all threads.
+ */
 final class Perft {
 
-  private static final int MAX_DEPTH = 6;
+  static final int DEFAULT_DEPTH = 6;
 
-  private final MoveGenerator[] moveGenerators = new MoveGenerator[MAX_DEPTH];
+  // Subtrees deeper than this are split into a task per move
+  private static final int SPLIT_DEPTH = 5;
 
-  void run() {
-    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
-    int depth = MAX_DEPTH;
+  private final ForkJoinPool pool;
+  private final int splitDepth;
 
-    for (int i = 0; i < MAX_DEPTH; ++i) {
-      moveGenerators[i] = new MoveGenerator();
-    }
+  private boolean bulkCounting = false;
+  private PerftTable table = null;
+
+  Perft(int parallelism) {
+    this(parallelism, SPLIT_DEPTH);
+  }
+
+  Perft(int parallelism, int splitDepth) {
+    pool = new ForkJoinPool(parallelism);
+    this.splitDepth = splitDepth;
+  }
+
+  /**
+   * Counts the legal moves at depth 1 instead of making every leaf move.
+   */
+  void setBulkCounting(boolean bulkCounting) {
+    this.bulkCounting = bulkCounting;
+  }
+
+  /**
+   * Caches the node counts of subtrees in a table of the given size. A size
+   * of 0 disables the table.
+   */
+  void setHashSize(int megabytes) {
+    checkArgument(megabytes >= 0 && megabytes <= TranspositionTable.MAX_SIZE);
+
+    table = megabytes > 0 ? new PerftTable(megabytes) : null;
+  }
+
+  /**
+   * Counts the nodes of the position and prints the count of every root
+   * move.
+   *
+   * @return the total number of nodes.
+   */
+  long run(@NotNull Position position, int depth) {
+    checkArgument(depth >= 1);
 
     System.out.format("Testing %s at depth %d%n",
         Notation.fromPosition(position), depth);
 
     long startTime = currentTimeMillis();
-    long result = miniMax(depth, position, 0);
+
+    // Submit a task for every root move
+    MoveList<MoveEntry> moves = new MoveGenerator().getLegalMoves(position,
+        depth, position.isCheck());
+    List<ForkJoinTask<Long>> tasks = new ArrayList<>();
+    for (int i = 0; i < moves.size; ++i) {
+      Position child = new Position(position);
+      child.makeMove(moves.entries[i].move);
+      tasks.add(pool.submit(new PerftTask(child, depth - 1)));
+    }
+
+    long result = 0;
+    for (int i = 0; i < moves.size; ++i) {
+      long nodes = tasks.get(i).join();
+      result += nodes;
+
+      System.out.format("%s: %d%n",
+          Notation.fromMove(moves.entries[i].move), nodes);
+    }
+
     long endTime = currentTimeMillis();
 
     long duration = endTime - startTime;
@@ -51,15 +120,78 @@ final class Perft {
         duration - SECONDS.toMillis(MILLISECONDS.toSeconds(duration))
     );
 
-    System.out.format("n/ms: %d%n", result / duration);
+    System.out.format("n/ms: %d%n", result / max(duration, 1));
+
+    return result;
+  }
+
+  /**
+   * Counts the nodes of the position without printing anything.
+   */
+  long count(@NotNull Position position, int depth) {
+    return pool.invoke(new PerftTask(new Position(position), depth));
   }
 
-  private long miniMax(int depth, Position position, int ply) {
+  /**
+   * This task counts the nodes of a subtree. It owns its position.
+   */
+  private final class PerftTask extends RecursiveTask<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Position position;
+    private final int depth;
+
+    private PerftTask(@NotNull Position position, int depth) {
+      this.position = position;
+      this.depth = depth;
+    }
+
+    @Override
+    protected Long compute() {
+      if (depth <= splitDepth) {
+        MoveGenerator[] moveGenerators = new MoveGenerator[depth];
+        for (int i = 0; i < moveGenerators.length; ++i) {
+          moveGenerators[i] = new MoveGenerator();
+        }
+
+        return miniMax(depth, position, 0, moveGenerators);
+      }
+
+      MoveList<MoveEntry> moves = new MoveGenerator().getLegalMoves(position,
+          depth, position.isCheck());
+      List<PerftTask> tasks = new ArrayList<>();
+      for (int i = 0; i < moves.size; ++i) {
+        Position child = new Position(position);
+        child.makeMove(moves.entries[i].move);
+        tasks.add(new PerftTask(child, depth - 1));
+      }
+
+      long totalNodes = 0;
+      for (PerftTask task : invokeAll(tasks)) {
+        totalNodes += task.join();
+      }
+
+      return totalNodes;
+    }
+  }
+
+  private long miniMax(int depth, @NotNull Position position, int ply,
+      @NotNull MoveGenerator[] moveGenerators) {
     if (depth == 0) {
       return 1;
+    } else if (depth == 1 && bulkCounting) {
+      return countLegalMoves(position, moveGenerators[ply]);
     }
 
-    int totalNodes = 0;
+    if (table != null) {
+      long nodes = table.probe(position.zobristKey, depth);
+      if (nodes != PerftTable.NOENTRY) {
+        return nodes;
+      }
+    }
+
+    long totalNodes = 0;
 
     boolean isCheck = position.isCheck();
     MoveGenerator moveGenerator = moveGenerators[ply];
@@ -70,11 +202,101 @@ final class Perft {
 
       position.makeMove(move);
       if (!position.isCheck(opposite(position.activeColor))) {
-        totalNodes += miniMax(depth - 1, position, ply + 1);
+        totalNodes += miniMax(depth - 1, position, ply + 1, moveGenerators);
       }
       position.undoMove(move);
     }
 
+    if (table != null) {
+      table.store(position.zobristKey, depth, totalNodes);
+    }
+
+    return totalNodes;
+  }
+
+  /**
+   * Counts the legal moves without making them. A move is legal if the king
+   * does not move into an attack and a pinned piece stays on its pin line.
+   * We still make the move if we are in check or for en passant moves, which
+   * can uncover an attack on the king by removing two pieces from a rank.
+   */
+  private static long countLegalMoves(@NotNull Position position,
+      @NotNull MoveGenerator moveGenerator) {
+    boolean isCheck = position.isCheck();
+    int activeColor = position.activeColor;
+    int oppositeColor = opposite(activeColor);
+    int kingSquare = next(position.pieces[activeColor][KING].squares);
+    long pinned = isCheck ? 0 : position.getPinnedPieces(activeColor);
+
+    long totalNodes = 0;
+
+    MoveList<MoveEntry> moves = moveGenerator.getMoves(position, 1, isCheck);
+    for (int i = 0; i < moves.size; ++i) {
+      int move = moves.entries[i].move;
+      int originSquare = Move.getOriginSquare(move);
+      int targetSquare = Move.getTargetSquare(move);
+
+      if (isCheck || Move.getType(move) == ENPASSANT) {
+        position.makeMove(move);
+        if (!position.isCheck(activeColor)) {
+          ++totalNodes;
+        }
+        position.undoMove(move);
+      } else if (originSquare == kingSquare) {
+        // This includes castling, where we only have to test the target
+        if (!position.isAttacked(targetSquare, oppositeColor)) {
+          ++totalNodes;
+        }
+      } else if ((pinned & Bitboard.valueOf(originSquare)) == 0
+          || (Attacks.line(kingSquare, originSquare)
+          & Bitboard.valueOf(targetSquare)) != 0) {
+        ++totalNodes;
+      }
+    }
+
     return totalNodes;
   }
+
+  /**
+   * This table caches the node count of a subtree by zobrist key and depth.
+   * Like the TranspositionTable, the key is stored XOR-ed with the data, so
+   * it can be shared between threads without locking.
+   */
+  private static final class PerftTable {
+
+    private static final long NOENTRY = -1;
+
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+    private final long[] entries;
+    private final int mask;
+
+    private PerftTable(int megabytes) {
+      long size = Long.highestOneBit(
+          (long) megabytes * 1024 * 1024 / (2 * Long.BYTES));
+      entries = new long[(int) size * 2];
+      mask = (int) size - 1;
+    }
+
+    private long probe(long zobristKey, int depth) {
+      int index = (((int) zobristKey ^ depth) & mask) << 1;
+      long data = entries[index + 1];
+
+      if ((entries[index] ^ data) == zobristKey && data != 0
+          && (data & DEPTH_MASK) == depth) {
+        return data >>> DEPTH_BITS;
+      } else {
+        return NOENTRY;
+      }
+    }
+
+    private void store(long zobristKey, int depth, long nodes) {
+      int index = (((int) zobristKey ^ depth) & mask) << 1;
+      long data = (nodes << DEPTH_BITS) | depth;
+
+      entries[index] = zobristKey ^ data;
+      entries[index + 1] = data;
+    }
+  }
 }
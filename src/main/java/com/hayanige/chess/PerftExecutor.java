@@ -8,15 +8,121 @@
 
 package com.hayanige.chess;
 
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
 public class PerftExecutor {
 
   public static void main(String[] args) {
     try {
-      new Perft().run();
+      Options opts = createOption();
+      CommandLine cli = new DefaultParser().parse(opts, args);
+
+      if (cli.hasOption("h")) {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("Early Escape Perft", opts);
+        return;
+      }
+
+      boolean suite = cli.hasOption("s") || cli.hasOption("e");
+      String fen = cli.getOptionValue("f", Notation.STANDARDPOSITION);
+      int depth = cli.hasOption("d")
+          ? Integer.parseInt(cli.getOptionValue("d"))
+          : suite ? PerftSuite.DEFAULT_DEPTH : Perft.DEFAULT_DEPTH;
+      int threads = cli.hasOption("t")
+          ? Integer.parseInt(cli.getOptionValue("t"))
+          : Runtime.getRuntime().availableProcessors();
+
+      Perft perft = new Perft(threads);
+      perft.setBulkCounting(cli.hasOption("b"));
+      if (cli.hasOption("H")) {
+        perft.setHashSize(Integer.parseInt(cli.getOptionValue("H")));
+      }
+
+      if (suite) {
+        List<PerftSuite.Entry> entries;
+        try (InputStream input = cli.hasOption("e")
+            ? new FileInputStream(cli.getOptionValue("e"))
+            : PerftExecutor.class.getResourceAsStream(
+                PerftSuite.DEFAULT_SUITE)) {
+          entries = PerftSuite.read(input);
+        }
+
+        if (!new PerftSuite(perft, threads).run(entries, depth)) {
+          System.exit(1);
+        }
+      } else {
+        perft.run(Notation.toPosition(fen), depth);
+      }
     } catch (Throwable t) {
       t.printStackTrace();
       System.exit(1);
     }
   }
 
+  private static Options createOption() {
+    Options result = new Options();
+
+    result.addOption(Option.builder("f")
+        .longOpt("fen")
+        .desc("position in FEN (default: start position)")
+        .hasArg()
+        .build()
+    );
+
+    result.addOption(Option.builder("s")
+        .longOpt("suite")
+        .desc("run the built-in perft suite")
+        .build()
+    );
+
+    result.addOption(Option.builder("e")
+        .longOpt("epd")
+        .desc("run the perft suite from an EPD file")
+        .hasArg()
+        .build()
+    );
+
+    result.addOption(Option.builder("d")
+        .longOpt("depth")
+        .desc("perft depth (default: " + Perft.DEFAULT_DEPTH
+            + ", maximum depth of the suite: " + PerftSuite.DEFAULT_DEPTH + ")")
+        .hasArg()
+        .build()
+    );
+
+    result.addOption(Option.builder("t")
+        .longOpt("threads")
+        .desc("number of threads (default: number of processors)")
+        .hasArg()
+        .build()
+    );
+
+    result.addOption(Option.builder("b")
+        .longOpt("bulk")
+        .desc("count the legal moves at depth 1 without making them")
+        .build()
+    );
+
+    result.addOption(Option.builder("H")
+        .longOpt("hash")
+        .desc("size of the perft hash table in MB (default: 0, disabled)")
+        .hasArg()
+        .build()
+    );
+
+    result.addOption(Option.builder("h")
+        .longOpt("help")
+        .desc("print this help")
+        .build()
+    );
+
+    return result;
+  }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This class runs perft on all positions of an EPD file and compares the
+ * node counts with the expected ones. Every line contains a FEN followed by
+ * the expected counts, e.g. "&lt;fen&gt; ;D1 20 ;D2 400".
+ */
+final class PerftSuite {
+
+  static final String DEFAULT_SUITE = "/perftsuite.epd";
+  static final int DEFAULT_DEPTH = 5;
+
+  private final Perft perft;
+  private final int parallelism;
+
+  static final class Entry {
+
+    final String fen;
+    // Expected node counts indexed by depth, 0 if unknown
+    final long[] nodes;
+
+    private Entry(@NotNull String fen, @NotNull long[] nodes) {
+      this.fen = fen;
+      this.nodes = nodes;
+    }
+
+    /**
+     * Returns the deepest depth up to maxDepth with an expected count or 0
+     * if there is none.
+     */
+    private int getDepth(int maxDepth) {
+      for (int depth = min(maxDepth, nodes.length - 1); depth > 0; --depth) {
+        if (nodes[depth] != 0) {
+          return depth;
+        }
+      }
+
+      return 0;
+    }
+  }
+
+  private static final class Result {
+
+    private final long nodes;
+    private final long duration;
+
+    private Result(long nodes, long duration) {
+      this.nodes = nodes;
+      this.duration = duration;
+    }
+  }
+
+  /**
+   * @param perft the Perft used to count the nodes.
+   * @param parallelism the number of positions counted at the same time.
+   */
+  PerftSuite(@NotNull Perft perft, int parallelism) {
+    checkArgument(parallelism >= 1);
+
+    this.perft = perft;
+    this.parallelism = parallelism;
+  }
+
+  static List<Entry> read(@NotNull InputStream input) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(input, UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] tokens = line.split(";");
+        long[] nodes = new long[tokens.length];
+        for (int i = 1; i < tokens.length; ++i) {
+          String[] values = tokens[i].trim().split("\\s+");
+          checkArgument(values.length == 2 && values[0].startsWith("D"),
+              "Invalid EPD line: %s", line);
+
+          int depth = Integer.parseInt(values[0].substring(1));
+          if (depth >= nodes.length) {
+            long[] newNodes = new long[depth + 1];
+            System.arraycopy(nodes, 0, newNodes, 0, nodes.length);
+            nodes = newNodes;
+          }
+          nodes[depth] = Long.parseLong(values[1]);
+        }
+
+        entries.add(new Entry(tokens[0].trim(), nodes));
+      }
+    }
+
+    return entries;
+  }
+
+  /**
+   * Counts the nodes of all entries at their deepest depth up to maxDepth
+   * and prints a table with the results.
+   *
+   * @return whether all node counts are as expected.
+   */
+  boolean run(@NotNull List<Entry> entries, int maxDepth)
+      throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+    long startTime = currentTimeMillis();
+
+    List<Future<Result>> futures = new ArrayList<>();
+    for (Entry entry : entries) {
+      Position position = Notation.toPosition(entry.fen);
+      int depth = entry.getDepth(maxDepth);
+
+      futures.add(executor.submit(() -> {
+        long entryStartTime = currentTimeMillis();
+        long nodes = perft.count(position, depth);
+        return new Result(nodes, currentTimeMillis() - entryStartTime);
+      }));
+    }
+    executor.shutdown();
+
+    System.out.format("%4s %5s %12s %12s %10s %6s  %s%n",
+        "#", "Depth", "Nodes", "Expected", "nps", "Result", "FEN");
+
+    long totalNodes = 0;
+    int failures = 0;
+    for (int i = 0; i < entries.size(); ++i) {
+      Entry entry = entries.get(i);
+      int depth = entry.getDepth(maxDepth);
+      Result result = futures.get(i).get();
+
+      boolean passed = depth == 0 || result.nodes == entry.nodes[depth];
+      if (!passed) {
+        ++failures;
+      }
+      totalNodes += result.nodes;
+
+      System.out.format("%4d %5d %12d %12d %10d %6s  %s%n",
+          i + 1, depth, result.nodes, entry.nodes[depth],
+          result.nodes * 1000 / max(result.duration, 1),
+          passed ? "ok" : "FAIL", entry.fen);
+    }
+
+    long duration = currentTimeMillis() - startTime;
+
+    System.out.format("Positions: %d, failed: %d%n", entries.size(), failures);
+    System.out.format("Nodes: %d, time: %d ms, nps: %d%n",
+        totalNodes, duration, totalNodes * 1000 / max(duration, 1));
+
+    return failures == 0;
+  }
+}
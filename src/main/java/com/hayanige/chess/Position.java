@@ -8,6 +8,7 @@
 package com.hayanige.chess;
 
 import static com.hayanige.chess.Bitboard.next;
+import static com.hayanige.chess.Bitboard.remainder;
 import static com.hayanige.chess.Castling.BLACK_KINGSIDE;
 import static com.hayanige.chess.Castling.BLACK_QUEENSIDE;
 import static com.hayanige.chess.Castling.NOCASTLING;
@@ -33,7 +34,6 @@ import static com.hayanige.chess.Square.NOSQUARE;
 import static com.hayanige.chess.Square.S;
 import static com.hayanige.chess.Square.a1;
 import static com.hayanige.chess.Square.a8;
-import static com.hayanige.chess.Square.bishopDirections;
 import static com.hayanige.chess.Square.c1;
 import static com.hayanige.chess.Square.c8;
 import static com.hayanige.chess.Square.d1;
@@ -46,10 +46,6 @@ import static com.hayanige.chess.Square.g1;
 import static com.hayanige.chess.Square.g8;
 import static com.hayanige.chess.Square.h1;
 import static com.hayanige.chess.Square.h8;
-import static com.hayanige.chess.Square.kingDirections;
-import static com.hayanige.chess.Square.knightDirections;
-import static com.hayanige.chess.Square.pawnDirections;
-import static com.hayanige.chess.Square.rookDirections;
 import static java.lang.Math.max;
 
 import java.security.SecureRandom;
@@ -57,13 +53,17 @@ import org.jetbrains.annotations.NotNull;
 
 final class Position {
 
-  private static final int MAX_MOVES = MAX_PLY + 1024;
+  static final int MAX_MOVES = MAX_PLY + 1024;
 
   final int[] board = new int[Square.VALUES_LENGTH];
 
   final Bitboard[][] pieces =
       new Bitboard[Color.values.length][PieceType.values.length];
 
+  // Occupied squares per color and of both colors
+  final Bitboard[] occupancy = new Bitboard[Color.values.length];
+  final Bitboard occupied = new Bitboard();
+
   final int[] material = new int[Color.values.length];
 
   int castlingRights = NOCASTLING;
@@ -74,12 +74,29 @@ final class Position {
 
   long zobristKey = 0;
 
+  // The zobrist key of all pawns and kings. Only put() and remove() change
+  // it, so we don't have to save it in the State.
+  long pawnZobristKey = 0;
+
+  // The index into the MaterialTable and the number of pieces which the
+  // table does not cover
+  int materialKey = 0;
+  int materialOverflow = 0;
+
   // We will save same position parameters in a State before making a move.
   // Later we will restore them before undoing a move.
 
   private final State[] states = new State[MAX_MOVES];
   private int statesSize = 0;
 
+  // The gains of every capture in see(). There can be at most 32 captures.
+  private final int[] seeGains = new int[33];
+
+  // The NNUE accumulator is attached by NnueEvaluation and kept up to date
+  // by put() and remove(). It is not copied with the position, every search
+  // thread attaches its own to its root position.
+  NnueAccumulator accumulator = null;
+
   private static final class Zobrist {
 
     private static final SecureRandom random = new SecureRandom();
@@ -101,10 +118,18 @@ final class Position {
       castlingRights[WHITE_QUEENSIDE] = next();
       castlingRights[BLACK_KINGSIDE] = next();
       castlingRights[BLACK_QUEENSIDE] = next();
-      castlingRights[WHITE_KINGSIDE | WHITE_QUEENSIDE] =
-          castlingRights[WHITE_KINGSIDE] ^ castlingRights[WHITE_QUEENSIDE];
-      castlingRights[BLACK_KINGSIDE | BLACK_QUEENSIDE] =
-          castlingRights[BLACK_KINGSIDE] ^ castlingRights[BLACK_QUEENSIDE];
+
+      // Every combination is the XOR of its single castling rights
+      for (int i = 0; i < Castling.VALUES_LENGTH; ++i) {
+        if (!Castling.isValid(i)) {
+          for (int castling = WHITE_KINGSIDE; castling <= BLACK_QUEENSIDE;
+              castling <<= 1) {
+            if ((i & castling) != NOCASTLING) {
+              castlingRights[i] ^= castlingRights[castling];
+            }
+          }
+        }
+      }
 
       for (int i = 0; i < Square.VALUES_LENGTH; ++i) {
         enPassantSquare[i] = next();
@@ -143,6 +168,7 @@ final class Position {
       for (int pieceType : PieceType.values) {
         pieces[color][pieceType] = new Bitboard();
       }
+      occupancy[color] = new Bitboard();
     }
 
     // Initialize states
@@ -151,6 +177,49 @@ final class Position {
     }
   }
 
+  /**
+   * Creates a deep copy of the position including the move history, so
+   * repetitions are still detected in the copy.
+   */
+  Position(@NotNull Position position) {
+    System.arraycopy(position.board, 0, board, 0, board.length);
+
+    for (int color : Color.values) {
+      for (int pieceType : PieceType.values) {
+        pieces[color][pieceType] = new Bitboard();
+        pieces[color][pieceType].squares =
+            position.pieces[color][pieceType].squares;
+      }
+      occupancy[color] = new Bitboard();
+      occupancy[color].squares = position.occupancy[color].squares;
+    }
+    occupied.squares = position.occupied.squares;
+
+    System.arraycopy(position.material, 0, material, 0, material.length);
+
+    castlingRights = position.castlingRights;
+    enPassantSquare = position.enPassantSquare;
+    activeColor = position.activeColor;
+    halfmoveClock = position.halfmoveClock;
+    halfmoveNumber = position.halfmoveNumber;
+
+    zobristKey = position.zobristKey;
+    pawnZobristKey = position.pawnZobristKey;
+    materialKey = position.materialKey;
+    materialOverflow = position.materialOverflow;
+
+    for (int i = 0; i < states.length; ++i) {
+      states[i] = new State();
+    }
+    for (int i = 0; i < position.statesSize; ++i) {
+      states[i].zobristKey = position.states[i].zobristKey;
+      states[i].castlingRights = position.states[i].castlingRights;
+      states[i].enPassantSquare = position.states[i].enPassantSquare;
+      states[i].halfmoveClock = position.states[i].halfmoveClock;
+    }
+    statesSize = position.statesSize;
+  }
+
   void setActiveColor(int activeColor) {
     if (this.activeColor != activeColor) {
       this.activeColor = activeColor;
@@ -202,13 +271,19 @@ final class Position {
     return false;
   }
 
+  /**
+   * Returns whether the color has a piece besides pawns and the king. Without
+   * such pieces zugzwang is common.
+   */
+  boolean hasNonPawnMaterial(int color) {
+    Bitboard[] colorPieces = pieces[color];
+
+    return (colorPieces[KNIGHT].squares | colorPieces[BISHOP].squares
+        | colorPieces[ROOK].squares | colorPieces[QUEEN].squares) != 0;
+  }
+
   boolean hasInsufficientMaterial() {
-    // If there is only one minor left, we are unable to checkmate
-    return pieces[WHITE][PAWN].size() == 0 && pieces[BLACK][PAWN].size() == 0
-        && pieces[WHITE][ROOK].size() == 0 && pieces[BLACK][ROOK].size() == 0
-        && pieces[WHITE][QUEEN].size() == 0 && pieces[BLACK][QUEEN].size() == 0
-        && (pieces[WHITE][KNIGHT].size() + pieces[WHITE][BISHOP].size() <= 1)
-        && (pieces[BLACK][KNIGHT].size() + pieces[BLACK][BISHOP].size() <= 1);
+    return MaterialTable.isInsufficient(MaterialTable.get(this));
   }
 
   /**
@@ -224,8 +299,22 @@ final class Position {
 
     board[square] = piece;
     pieces[color][pieceType].add(square);
+    occupancy[color].add(square);
+    occupied.add(square);
     material[color] += PieceType.getValue(pieceType);
+    if (MaterialTable.isCovered(pieceType, pieces[color][pieceType].size())) {
+      materialKey += MaterialTable.getWeight(color, pieceType);
+    } else {
+      ++materialOverflow;
+    }
     zobristKey ^= Zobrist.board[piece][square];
+    if (pieceType == PAWN || pieceType == KING) {
+      pawnZobristKey ^= Zobrist.board[piece][square];
+    }
+
+    if (accumulator != null) {
+      accumulator.add(piece, square);
+    }
   }
 
   /**
@@ -238,11 +327,26 @@ final class Position {
     int pieceType = Piece.getType(piece);
     int color = Piece.getColor(piece);
 
+    if (MaterialTable.isCovered(pieceType, pieces[color][pieceType].size())) {
+      materialKey -= MaterialTable.getWeight(color, pieceType);
+    } else {
+      --materialOverflow;
+    }
+
     board[square] = NOPIECE;
     pieces[color][pieceType].remove(square);
+    occupancy[color].remove(square);
+    occupied.remove(square);
     material[color] -= PieceType.getValue(pieceType);
 
     zobristKey ^= Zobrist.board[piece][square];
+    if (pieceType == PAWN || pieceType == KING) {
+      pawnZobristKey ^= Zobrist.board[piece][square];
+    }
+
+    if (accumulator != null) {
+      accumulator.remove(piece, square);
+    }
 
     return piece;
   }
@@ -257,6 +361,10 @@ final class Position {
 
     ++statesSize;
 
+    if (accumulator != null) {
+      accumulator.push();
+    }
+
     // Get variables
     int type = Move.getType(move);
     int originSquare = Move.getOriginSquare(move);
@@ -357,6 +465,11 @@ final class Position {
     // Update activeColor
     activeColor = opposite(activeColor);
 
+    // The previous accumulator is still on the stack, so put() and remove()
+    // must not touch the current one
+    NnueAccumulator accumulator = this.accumulator;
+    this.accumulator = null;
+
     // Undo move rook
     if (type == CASTLING) {
       int rookOriginSquare;
@@ -407,6 +520,61 @@ final class Position {
     enPassantSquare = entry.enPassantSquare;
     castlingRights = entry.castlingRights;
     zobristKey = entry.zobristKey;
+
+    this.accumulator = accumulator;
+    if (accumulator != null) {
+      accumulator.pop(this);
+    }
+  }
+
+  /**
+   * Passes the move to the opponent without moving a piece. We only use it
+   * for null move pruning in search.
+   */
+  void makeNullMove() {
+    // Save state
+    State entry = states[statesSize];
+    entry.zobristKey = zobristKey;
+    entry.castlingRights = castlingRights;
+    entry.enPassantSquare = enPassantSquare;
+    entry.halfmoveClock = halfmoveClock;
+
+    ++statesSize;
+
+    // No piece moves, so the accumulator stays valid and we don't push it
+
+    // Update enPassantSquare
+    if (enPassantSquare != NOSQUARE) {
+      zobristKey ^= Zobrist.enPassantSquare[enPassantSquare];
+      enPassantSquare = NOSQUARE;
+    }
+
+    // Update activeColor
+    activeColor = opposite(activeColor);
+    zobristKey ^= Zobrist.activeColor;
+
+    // Reset halfmoveClock, so we never find a repetition across the null move
+    halfmoveClock = 0;
+
+    // Update fullMoveNumber
+    ++halfmoveNumber;
+  }
+
+  void undoNullMove() {
+    // Update fullMoveNumber
+    --halfmoveNumber;
+
+    // Update activeColor
+    activeColor = opposite(activeColor);
+
+    // Restore state
+    --statesSize;
+
+    State entry = states[statesSize];
+    halfmoveClock = entry.halfmoveClock;
+    enPassantSquare = entry.enPassantSquare;
+    castlingRights = entry.castlingRights;
+    zobristKey = entry.zobristKey;
   }
 
   private void clearCastling(int square) {
@@ -436,8 +604,8 @@ final class Position {
     }
 
     if (newCastlingRights != castlingRights) {
-      castlingRights = newCastlingRights;
       zobristKey ^= Zobrist.castlingRights[newCastlingRights ^ castlingRights];
+      castlingRights = newCastlingRights;
     }
   }
 
@@ -452,86 +620,171 @@ final class Position {
     return isAttacked(next(pieces[color][KING].squares), opposite(color));
   }
 
+  /**
+   * Returns the pieces of the color which are pinned to their own king. A
+   * pinned piece may only move along the line through its king.
+   */
+  long getPinnedPieces(int color) {
+    int kingSquare = next(pieces[color][KING].squares);
+    Bitboard[] attackers = pieces[opposite(color)];
+
+    // Find all sliders which would attack the king on an empty board
+    long queens = attackers[QUEEN].squares;
+    long snipers = (Attacks.bishop(kingSquare, 0)
+        & (attackers[BISHOP].squares | queens))
+        | (Attacks.rook(kingSquare, 0)
+        & (attackers[ROOK].squares | queens));
+
+    long pinned = 0;
+    for (; snipers != 0; snipers = remainder(snipers)) {
+      long blockers = Attacks.between(kingSquare, next(snipers))
+          & occupied.squares;
+
+      // Exactly one blocker of our own color is pinned
+      if (blockers != 0 && remainder(blockers) == 0) {
+        pinned |= blockers & occupancy[color].squares;
+      }
+    }
+
+    return pinned;
+  }
+
   /**
    * Returns whether the targetSquare is attacked by any piece from the
-   * attackerColor. We will backtrack from the targetSquare to find the piece.
+   * attackerColor. We will look up the attacks from the targetSquare and
+   * intersect them with the attacker pieces.
    *
    * @param targetSquare the target Square.
    * @param attackerColor the attacker Color.
    * @return whether the targetSquare is attacked.
    */
   boolean isAttacked(int targetSquare, int attackerColor) {
-    // Pawn attacks
-    int pawnPiece = Piece.valueOf(attackerColor, PAWN);
-    for (int i = 1; i < pawnDirections[attackerColor].length; ++i) {
-      int attackerSquare = targetSquare - pawnDirections[attackerColor][i];
-      if (Square.isValid(attackerSquare)) {
-        int attackerPawn = board[attackerSquare];
-        if (attackerPawn == pawnPiece) {
-          return true;
-        }
-      }
+    Bitboard[] attackers = pieces[attackerColor];
+
+    // A pawn attacks the targetSquare if a pawn of the other color on the
+    // targetSquare would attack the pawn
+    if ((Attacks.pawn(opposite(attackerColor), targetSquare)
+        & attackers[PAWN].squares) != 0
+        || (Attacks.knight(targetSquare) & attackers[KNIGHT].squares) != 0
+        || (Attacks.king(targetSquare) & attackers[KING].squares) != 0) {
+      return true;
     }
 
-    return isAttacked(targetSquare, Piece.valueOf(attackerColor, KNIGHT),
-        knightDirections)
-
-        // The queen moves like a bishop, so check both piece types
-        || isAttacked(targetSquare,
-        Piece.valueOf(attackerColor, BISHOP),
-        Piece.valueOf(attackerColor, QUEEN),
-        bishopDirections)
-
-        // The queen moves like a rook, so check both piece types
-        || isAttacked(targetSquare,
-        Piece.valueOf(attackerColor, ROOK),
-        Piece.valueOf(attackerColor, QUEEN),
-        rookDirections)
+    // The queen moves like a bishop and a rook, so check both piece types
+    long queens = attackers[QUEEN].squares;
+    return (Attacks.bishop(targetSquare, occupied.squares)
+        & (attackers[BISHOP].squares | queens)) != 0
+        || (Attacks.rook(targetSquare, occupied.squares)
+        & (attackers[ROOK].squares | queens)) != 0;
+  }
 
-        || isAttacked(targetSquare,
-        Piece.valueOf(attackerColor, KING),
-        kingDirections);
+  /**
+   * Returns all pieces of both colors which attack the targetSquare, if only
+   * the occupiedSquares are occupied.
+   */
+  long getAttackers(int targetSquare, long occupiedSquares) {
+    long bishops = pieces[WHITE][BISHOP].squares | pieces[BLACK][BISHOP].squares
+        | pieces[WHITE][QUEEN].squares | pieces[BLACK][QUEEN].squares;
+    long rooks = pieces[WHITE][ROOK].squares | pieces[BLACK][ROOK].squares
+        | pieces[WHITE][QUEEN].squares | pieces[BLACK][QUEEN].squares;
+
+    return (Attacks.pawn(BLACK, targetSquare) & pieces[WHITE][PAWN].squares)
+        | (Attacks.pawn(WHITE, targetSquare) & pieces[BLACK][PAWN].squares)
+        | (Attacks.knight(targetSquare)
+        & (pieces[WHITE][KNIGHT].squares | pieces[BLACK][KNIGHT].squares))
+        | (Attacks.king(targetSquare)
+        & (pieces[WHITE][KING].squares | pieces[BLACK][KING].squares))
+        | (Attacks.bishop(targetSquare, occupiedSquares) & bishops)
+        | (Attacks.rook(targetSquare, occupiedSquares) & rooks);
   }
 
   /**
-   * Returns whether the targetSquare is attacked by a non-sliding piece.
+   * Returns the static exchange evaluation of the move. Both sides capture on
+   * the target square with their least valuable piece, and may stop whenever
+   * they like. Sliders behind other attackers join the exchange as soon as
+   * the square in front of them is free. We ignore pins.
+   *
+   * @return the material balance of the exchange for the active color.
    */
-  private boolean isAttacked(int targetSquare, int attackerPiece,
-      @NotNull int[] directions) {
-    for (int direction : directions) {
-      int attackerSquare = targetSquare + direction;
+  int see(int move) {
+    int type = Move.getType(move);
+    if (type == CASTLING) {
+      return 0;
+    }
 
-      if (Square.isValid(attackerSquare) && board[attackerSquare]
-          == attackerPiece) {
-        return true;
-      }
+    int originSquare = Move.getOriginSquare(move);
+    int targetSquare = Move.getTargetSquare(move);
+    int targetPiece = Move.getTargetPiece(move);
+
+    long occupiedSquares = occupied.squares ^ Bitboard.valueOf(originSquare);
+
+    int[] gains = seeGains;
+    gains[0] = targetPiece == NOPIECE
+        ? 0 : PieceType.getValue(Piece.getType(targetPiece));
+    int pieceValue = PieceType.getValue(
+        Piece.getType(Move.getOriginPiece(move)));
+    if (type == PAWNPROMOTION) {
+      int promotionValue = PieceType.getValue(Move.getPromotion(move));
+      gains[0] += promotionValue - PieceType.PAWN_VALUE;
+      pieceValue = promotionValue;
+    } else if (type == ENPASSANT) {
+      occupiedSquares ^= Bitboard.valueOf(
+          targetSquare + (activeColor == WHITE ? S : N));
     }
 
-    return false;
-  }
+    long bishops = pieces[WHITE][BISHOP].squares | pieces[BLACK][BISHOP].squares
+        | pieces[WHITE][QUEEN].squares | pieces[BLACK][QUEEN].squares;
+    long rooks = pieces[WHITE][ROOK].squares | pieces[BLACK][ROOK].squares
+        | pieces[WHITE][QUEEN].squares | pieces[BLACK][QUEEN].squares;
+
+    long attackers = getAttackers(targetSquare, occupiedSquares)
+        & occupiedSquares;
+    int color = opposite(activeColor);
+    int depth = 0;
+    while (true) {
+      long colorAttackers = attackers & occupancy[color].squares;
+      if (colorAttackers == 0) {
+        break;
+      }
 
-  /**
-   * Returns whether the targetSquare is attacked by a sliding piece.
-   */
-  private boolean isAttacked(int targetSquare, int attackerPiece,
-      int queenPiece, @NotNull int[] directions) {
-    for (int direction : directions) {
-      int attackerSquare = targetSquare + direction;
-      while (Square.isValid(attackerSquare)) {
-        int piece = board[attackerSquare];
-
-        if (Piece.isValid(piece)) {
-          if (piece == attackerPiece || piece == queenPiece) {
-            return true;
-          }
+      // Find our least valuable attacker
+      int attackerType = PAWN;
+      long attacker = colorAttackers & pieces[color][PAWN].squares;
+      while (attacker == 0) {
+        ++attackerType;
+        attacker = colorAttackers & pieces[color][attackerType].squares;
+      }
 
-          break;
-        } else {
-          attackerSquare += direction;
-        }
+      // The king may only capture if the other side has no attackers left
+      if (attackerType == KING
+          && (attackers & occupancy[opposite(color)].squares) != 0) {
+        break;
       }
+
+      ++depth;
+      gains[depth] = pieceValue - gains[depth - 1];
+      pieceValue = PieceType.getValue(attackerType);
+
+      // Remove the attacker and add the x-ray attackers behind it
+      occupiedSquares ^= attacker & -attacker;
+      if (attackerType == PAWN || attackerType == BISHOP
+          || attackerType == QUEEN) {
+        attackers |= Attacks.bishop(targetSquare, occupiedSquares) & bishops;
+      }
+      if (attackerType == ROOK || attackerType == QUEEN) {
+        attackers |= Attacks.rook(targetSquare, occupiedSquares) & rooks;
+      }
+      attackers &= occupiedSquares;
+
+      color = opposite(color);
     }
 
-    return false;
+    // Every side stops capturing if it would lose material
+    while (depth > 0) {
+      gains[depth - 1] = -max(-gains[depth - 1], gains[depth]);
+      --depth;
+    }
+
+    return gains[0];
   }
 }
@@ -19,7 +19,13 @@ interface Protocol {
   void sendStatus(boolean force, int currentDepth, int currentMaxDepth,
       long totalNodes, int currentMove, int currentMoveNumber);
 
-  void sendMove(RootEntry entry, int currentDepth, int currentMaxDepth,
-      long totalNodes);
+  /**
+   * Sends a principal variation.
+   *
+   * @param pvNumber the rank of the variation among all variations, starting
+   *     with 1.
+   */
+  void sendMove(RootEntry entry, int pvNumber, int currentDepth,
+      int currentMaxDepth, long totalNodes);
 
 }
@@ -9,17 +9,18 @@ package com.hayanige.chess;
 
 import static com.hayanige.chess.Bitboard.next;
 import static com.hayanige.chess.Bitboard.remainder;
+import static com.hayanige.chess.Bitboard.toX88Square;
+import static com.hayanige.chess.Color.BLACK;
+import static com.hayanige.chess.Color.WHITE;
 import static com.hayanige.chess.Color.opposite;
-import static com.hayanige.chess.Piece.NOPIECE;
 import static com.hayanige.chess.PieceType.BISHOP;
+import static com.hayanige.chess.PieceType.KING;
 import static com.hayanige.chess.PieceType.KNIGHT;
+import static com.hayanige.chess.PieceType.PAWN;
 import static com.hayanige.chess.PieceType.QUEEN;
 import static com.hayanige.chess.PieceType.ROOK;
-import static com.hayanige.chess.PieceType.isSliding;
-import static com.hayanige.chess.Square.bishopDirections;
-import static com.hayanige.chess.Square.knightDirections;
-import static com.hayanige.chess.Square.queenDirections;
-import static com.hayanige.chess.Square.rookDirections;
+import static java.lang.Long.bitCount;
+import static java.lang.Long.numberOfTrailingZeros;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -29,8 +30,62 @@ final class PulseEvaluation extends Evaluation {
 
   static int materialWeight = 100;
   static int mobilityWeight = 80;
+  static int pawnStructureWeight = 100;
   private static final int MAX_WEIGHT = 100;
 
+  private static final int DRAWISH_SCALE = 4;
+
+  // Pawn structure values
+  private static final int DOUBLED_PAWN = 10;
+  private static final int ISOLATED_PAWN = 10;
+  private static final int BACKWARD_PAWN = 8;
+  private static final int[] PASSED_PAWN = {0, 5, 10, 20, 35, 60, 100, 0};
+  private static final int SHIELD_PAWN = 10;
+  private static final int FAR_SHIELD_PAWN = 5;
+
+  // Bitboard masks indexed by file or by bitboard square
+  private static final long[] fileMasks = new long[8];
+  private static final long[] adjacentFileMasks = new long[8];
+  private static final long[] rankMasks = new long[8];
+  // Squares in front of a pawn on its own and the adjacent files
+  private static final long[][] passedMasks =
+      new long[Color.values.length][64];
+  // Squares beside and behind a pawn on the adjacent files
+  private static final long[][] supportMasks =
+      new long[Color.values.length][64];
+
+  static {
+    for (int i = 0; i < 8; ++i) {
+      fileMasks[i] = 0x0101010101010101L << i;
+      rankMasks[i] = 0xFFL << (i * 8);
+    }
+    for (int file = 0; file < 8; ++file) {
+      adjacentFileMasks[file] = (file > 0 ? fileMasks[file - 1] : 0)
+          | (file < 7 ? fileMasks[file + 1] : 0);
+    }
+
+    for (int index = 0; index < 64; ++index) {
+      int file = index & 7;
+      int rank = index >>> 3;
+      long span = fileMasks[file] | adjacentFileMasks[file];
+
+      for (int i = 0; i < 8; ++i) {
+        if (i > rank) {
+          passedMasks[WHITE][index] |= span & rankMasks[i];
+        } else {
+          supportMasks[WHITE][index] |= adjacentFileMasks[file] & rankMasks[i];
+        }
+        if (i < rank) {
+          passedMasks[BLACK][index] |= span & rankMasks[i];
+        } else {
+          supportMasks[BLACK][index] |= adjacentFileMasks[file] & rankMasks[i];
+        }
+      }
+    }
+  }
+
+  // The pawn structure changes rarely, so we remember its value
+  private final PawnTable pawnTable = new PawnTable(PawnTable.DEFAULT_SIZE);
 
   /**
    * Evaluates the position.
@@ -45,8 +100,9 @@ final class PulseEvaluation extends Evaluation {
     int value = 0;
 
     // Evaluate material
-    int materialScore = (evaluateMaterial(myColor, position)
-        - evaluateMaterial(oppositeColor, position))
+    int materialEntry = MaterialTable.get(position);
+    int materialScore = (evaluateMaterial(myColor, materialEntry, position)
+        - evaluateMaterial(oppositeColor, materialEntry, position))
         * materialWeight / MAX_WEIGHT;
     value += materialScore;
 
@@ -56,54 +112,70 @@ final class PulseEvaluation extends Evaluation {
         * mobilityWeight / MAX_WEIGHT;
     value += mobilityScore;
 
+    // Evaluate pawn structure
+    int pawnStructureScore = evaluatePawnStructure(position)
+        * pawnStructureWeight / MAX_WEIGHT;
+    if (myColor == BLACK) {
+      pawnStructureScore = -pawnStructureScore;
+    }
+    value += pawnStructureScore;
+
+    // Evaluate king safety. The pawn shield only matters while there are
+    // pieces left to attack the king, so we scale it by the game phase.
+    int kingSafetyScore = (evaluateKingShield(myColor, position)
+        - evaluateKingShield(oppositeColor, position))
+        * MaterialTable.getPhase(materialEntry) / MaterialTable.MAX_PHASE;
+    value += kingSafetyScore;
+
+    // Without pawns most small advantages are not enough to win
+    if (MaterialTable.isDrawish(materialEntry)) {
+      value /= DRAWISH_SCALE;
+    }
+
     // Add Tempo
     value += TEMPO;
 
     return value;
   }
 
-  private int evaluateMaterial(int color, @NotNull Position position) {
+  private int evaluateMaterial(int color, int materialEntry,
+      @NotNull Position position) {
     int material = position.material[color];
 
-    // Add bonus for bishop pair
-    if (position.pieces[color][BISHOP].size() >= 2) {
-      material += 50;
+    // Add the imbalance, e.g. the bonus for the bishop pair, from the
+    // MaterialTable
+    if (color == WHITE) {
+      material += MaterialTable.getImbalance(materialEntry);
     }
 
     return material;
   }
 
   private int evaluateMobility(int color, @NotNull Position position) {
+    long occupied = position.occupied.squares;
+
     int knightMobility = 0;
     for (long squares = position.pieces[color][KNIGHT].squares;
         squares != 0; squares = remainder(squares)) {
-      int square = next(squares);
-      knightMobility += evaluateMobility(color, position, square,
-          knightDirections);
+      knightMobility += bitCount(Attacks.knight(next(squares)));
     }
 
     int bishopMobility = 0;
     for (long squares = position.pieces[color][BISHOP].squares;
         squares != 0; squares = remainder(squares)) {
-      int square = next(squares);
-      bishopMobility += evaluateMobility(color, position, square,
-          bishopDirections);
+      bishopMobility += bitCount(Attacks.bishop(next(squares), occupied));
     }
 
     int rookMobility = 0;
     for (long squares = position.pieces[color][ROOK].squares;
         squares != 0; squares = remainder(squares)) {
-      int square = next(squares);
-      rookMobility += evaluateMobility(color, position, square,
-          rookDirections);
+      rookMobility += bitCount(Attacks.rook(next(squares), occupied));
     }
 
     int queenMobility = 0;
     for (long squares = position.pieces[color][QUEEN].squares;
         squares != 0; squares = remainder(squares)) {
-      int square = next(squares);
-      queenMobility += evaluateMobility(color, position, square,
-          queenDirections);
+      queenMobility += bitCount(Attacks.queen(next(squares), occupied));
     }
 
     return knightMobility * 4
@@ -112,25 +184,82 @@ final class PulseEvaluation extends Evaluation {
         + queenMobility;
   }
 
-  private int evaluateMobility(int color, @NotNull Position position,
-      int square, @NotNull int[] directions) {
-    int mobility = 0;
-    boolean sliding = isSliding(Piece.getType(position.board[square]));
+  /**
+   * Returns the pawn structure value from the perspective of white.
+   */
+  private int evaluatePawnStructure(@NotNull Position position) {
+    int value = pawnTable.probe(position.pawnZobristKey);
+    if (value == PawnTable.NOENTRY) {
+      value = evaluatePawns(WHITE, position) - evaluatePawns(BLACK, position);
+      pawnTable.store(position.pawnZobristKey, value);
+    }
 
-    for (int direction : directions) {
-      int targetSquare = square + direction;
+    return value;
+  }
 
-      while (Square.isValid(targetSquare)) {
-        ++mobility;
+  /**
+   * Evaluates the pawns of the color. The value may only depend on the pawns
+   * and the kings, because it is stored by the pawn zobrist key.
+   */
+  private int evaluatePawns(int color, @NotNull Position position) {
+    long myPawns = position.pieces[color][PAWN].squares;
+    long oppositePawns = position.pieces[opposite(color)][PAWN].squares;
+    int value = 0;
 
-        if (sliding && position.board[targetSquare] == NOPIECE) {
-          targetSquare += direction;
-        } else {
-          break;
+    for (long squares = myPawns; squares != 0; squares = remainder(squares)) {
+      int index = numberOfTrailingZeros(squares);
+      int file = index & 7;
+      int rank = color == WHITE ? index >>> 3 : 7 - (index >>> 3);
+
+      if ((myPawns & adjacentFileMasks[file]) == 0) {
+        value -= ISOLATED_PAWN;
+      } else if ((myPawns & supportMasks[color][index]) == 0) {
+        // A pawn is backward if it cannot safely advance to its stop square
+        int stopSquare = toX88Square(color == WHITE ? index + 8 : index - 8);
+        if ((Attacks.pawn(color, stopSquare) & oppositePawns) != 0) {
+          value -= BACKWARD_PAWN;
         }
       }
+
+      // Only the front pawn of doubled pawns can be passed
+      long front = passedMasks[color][index];
+      if ((oppositePawns & front) == 0
+          && (myPawns & front & fileMasks[file]) == 0) {
+        value += PASSED_PAWN[rank];
+      }
+    }
+
+    for (int file = 0; file < 8; ++file) {
+      int count = bitCount(myPawns & fileMasks[file]);
+      if (count > 1) {
+        value -= (count - 1) * DOUBLED_PAWN;
+      }
     }
 
-    return mobility;
+    return value;
+  }
+
+  /**
+   * Returns the bonus for pawns in front of a king on its first two ranks.
+   */
+  private int evaluateKingShield(int color, @NotNull Position position) {
+    long myPawns = position.pieces[color][PAWN].squares;
+    int value = 0;
+
+    long king = position.pieces[color][KING].squares;
+    if (king != 0) {
+      int index = numberOfTrailingZeros(king);
+      int file = index & 7;
+      int rank = index >>> 3;
+      if (color == WHITE ? rank <= 1 : rank >= 6) {
+        int direction = color == WHITE ? 1 : -1;
+        long shield = myPawns & (fileMasks[file] | adjacentFileMasks[file]);
+        value += bitCount(shield & rankMasks[rank + direction]) * SHIELD_PAWN
+            + bitCount(shield & rankMasks[rank + 2 * direction])
+            * FAR_SHIELD_PAWN;
+      }
+    }
+
+    return value;
   }
 }
@@ -14,18 +14,26 @@ import static com.hayanige.chess.Color.opposite;
 import static com.hayanige.chess.Depth.MAX_DEPTH;
 import static com.hayanige.chess.Depth.MAX_PLY;
 import static com.hayanige.chess.Move.NOMOVE;
+import static com.hayanige.chess.MoveType.PAWNPROMOTION;
 import static com.hayanige.chess.Notation.fromPosition;
+import static com.hayanige.chess.TranspositionTable.EXACT;
+import static com.hayanige.chess.TranspositionTable.LOWER;
+import static com.hayanige.chess.TranspositionTable.NOENTRY;
+import static com.hayanige.chess.TranspositionTable.UPPER;
 import static com.hayanige.chess.Value.CHECKMATE;
+import static com.hayanige.chess.Value.CHECKMATE_THRESHOLD;
 import static com.hayanige.chess.Value.DRAW;
 import static com.hayanige.chess.Value.INFINITE;
+import static com.hayanige.chess.Value.NOVALUE;
 import static com.hayanige.chess.Value.isCheckmate;
 import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import com.hayanige.chess.MoveList.MoveEntry;
 import com.hayanige.chess.MoveList.MoveVariation;
 import com.hayanige.chess.MoveList.RootEntry;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Arrays;
 import java.util.concurrent.Semaphore;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -34,25 +42,115 @@ import org.slf4j.LoggerFactory;
 /**
  * This class implements our search in a separate thread to keep the main thread
  * available for more commands.
+ *
+ * The search thread runs the main worker. Additional helper workers search the
+ * same root position on their own threads and share their results through the
+ * transposition table. (Lazy SMP)
  */
 final class Search implements Runnable {
 
+  static final int DEFAULT_THREADS = 1;
+  static final int MIN_THREADS = 1;
+  static final int MAX_THREADS = 64;
+
+  static final int DEFAULT_MULTI_PV = 1;
+  static final int MIN_MULTI_PV = 1;
+  static final int MAX_MULTI_PV = 64;
+
+  // The helper workers check the node limit only every so many nodes.
+  private static final long NODES_CHECK_MASK = 1023;
+
+  // We adapt the number of nodes between two clock checks to our speed, so
+  // that we check about every millisecond.
+  private static final long CHECK_INTERVAL = 1_000_000;
+  private static final int MIN_CHECK_NODES = 64;
+  private static final int MAX_CHECK_NODES = 1 << 16;
+
+  // The first aspiration window around the value of the last iteration. It
+  // grows with every fail-low or fail-high.
+  private static final int ASPIRATION_WINDOW = 25;
+  private static final int ASPIRATION_DEPTH = 5;
+
+  // The number of quiet moves per node which get a history malus
+  private static final int MAX_QUIET_MOVES = 64;
+
+  // The selective search techniques. Each of them can be disabled for
+  // testing by its option name.
+  static final String NULL_MOVE_PRUNING = "NullMovePruning";
+  static final String LATE_MOVE_REDUCTIONS = "LateMoveReductions";
+  static final String FUTILITY_PRUNING = "FutilityPruning";
+  static final String REVERSE_FUTILITY_PRUNING = "ReverseFutilityPruning";
+  static final String RAZORING = "Razoring";
+  static final String[] SELECTIVE_OPTIONS = {
+      NULL_MOVE_PRUNING, LATE_MOVE_REDUCTIONS, FUTILITY_PRUNING,
+      REVERSE_FUTILITY_PRUNING, RAZORING
+  };
+
+  // Null move pruning
+  private static final int NULL_MOVE_DEPTH = 2;
+
+  // Late move reductions
+  private static final int LMR_DEPTH = 3;
+  private static final int LMR_MOVES = 3;
+  private static final int[][] reductions = new int[64][64];
+
+  // Futility margins by depth
+  private static final int[] FUTILITY_MARGIN = {0, 200, 300, 500};
+  private static final int REVERSE_FUTILITY_DEPTH = 6;
+  private static final int REVERSE_FUTILITY_MARGIN = 100;
+  private static final int[] RAZORING_MARGIN = {0, 300, 600};
+
+  // Singular extensions
+  private static final int SINGULAR_DEPTH = 8;
+  private static final int SINGULAR_TABLE_DEPTH = 3;
+
+  // We only extend within this multiple of the depth of the iteration. Every
+  // ply after that reduces the depth, so a long series of checks cannot
+  // extend a line up to MAX_PLY.
+  private static final int MAX_EXTENSION_FACTOR = 2;
+
+  static {
+    for (int depth = 1; depth < reductions.length; ++depth) {
+      for (int moveNumber = 1; moveNumber < reductions[depth].length;
+          ++moveNumber) {
+        reductions[depth][moveNumber] =
+            (int) (0.5 + Math.log(depth) * Math.log(moveNumber) / 2);
+      }
+    }
+  }
+
+  // Helper workers skip some depths, so they don't all search the same depth
+  // as the main worker.
+  private static final int[] SKIP_SIZE = {
+      1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4
+  };
+  private static final int[] SKIP_PHASE = {
+      0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7
+  };
+
   final private Logger logger = LoggerFactory.getLogger(Search.class);
 
   private final Thread thread = new Thread(this);
   private final Semaphore wakeupSignal = new Semaphore(0);
   private final Semaphore runSignal = new Semaphore(0);
   private final Semaphore stopSignal = new Semaphore(0);
+  // Every helper releases a permit when it has finished its search
+  private final Semaphore helperSignal = new Semaphore(0);
   private final Protocol protocol;
-  private boolean running = false;
-  private boolean shutdown = false;
+  private volatile boolean running = false;
+  private volatile boolean shutdown = false;
 
   private Position position;
   private Evaluation evaluation;
 
-  // We will store a MoveGenerator for each ply so we don't have to creat them
-  // in search. (which is expensive)
-  private final MoveGenerator[] moveGenerators = new MoveGenerator[MAX_PLY];
+  // The transposition table is kept between searches and shared by all
+  // workers.
+  private final TranspositionTable transpositionTable =
+      new TranspositionTable(TranspositionTable.DEFAULT_SIZE);
+
+  // The first worker is our main worker. It runs on our search thread. Each
+  // helper worker has its own thread, which waits for our searches.
+  private Worker[] workers = {new Worker(0)};
 
   // Depth search
   private int searchDepth;
@@ -60,37 +158,881 @@ final class Search implements Runnable {
   // Nodes search
   private long searchNodes;
 
-  // Time & Clock & Ponder search
+  // Time & Clock & Ponder search. A ponder search gets its deadline with
+  // the ponderhit.
   private long searchTime;
-  private Timer timer;
+  private volatile boolean isTimed;
+  private volatile long startTime;
+  private volatile long deadline;
+  private final TimeManager timeManager = new TimeManager();
   private boolean timerStopped;
   private boolean doTimeManagement;
 
+  // The main worker reads the clock and sends its status only every
+  // checkNodes nodes
+  private int checkNodes;
+  private int nodesUntilCheck;
+  private long lastCheckTime;
+
+  // The number of principal variations we search and report
+  private int multiPv = DEFAULT_MULTI_PV;
+
+  // Search the root with a small window around the last value
+  private boolean aspirationWindows = true;
+
+  // Selective search
+  private boolean nullMovePruning = true;
+  private boolean lateMoveReductions = true;
+  private boolean futilityPruning = true;
+  private boolean reverseFutilityPruning = true;
+  private boolean razoring = true;
+
   // Search parameters
-  private final MoveList<RootEntry> rootMoves = new MoveList<>(RootEntry.class);
-  private boolean abort;
+  private volatile boolean abort;
   private long totalNodes;
   private final int initialDepth = 1;
-  private int currentDepth;
+  private volatile int currentDepth;
   private int currentMaxDepth;
   private int currentMove;
   private int currentMoveNumber;
-  private final MoveVariation[] pv = new MoveVariation[MAX_PLY + 1];
 
   /**
-   * This is our search timer for time & clock & ponder searches.
+   * This class holds everything a single search thread needs. Every worker
+   * has its own position, move generators and principal variations.
    */
-  private final class SearchTimer extends TimerTask {
+  private final class Worker implements Runnable {
+
+    private final int id;
+
+    private Position position;
+
+    // We will store a MovePicker for each ply so we don't have to create them
+    // in search. (which is expensive)
+    private final MoveGenerator moveGenerator = new MoveGenerator();
+    private final MovePicker[] movePickers = new MovePicker[MAX_PLY];
+
+    // Two quiet moves per ply which caused a cut-off
+    private final int[][] killers = new int[MAX_PLY][2];
+
+    // The history and counter moves are kept between searches
+    private final History history = new History();
+
+    // The move we made at every ply and the quiet moves we searched
+    private final int[] playedMoves = new int[MAX_PLY];
+    // The hash move we skip at a ply to find out whether it is singular
+    private final int[] excludedMoves = new int[MAX_PLY];
+    private final int[][] quietMoves = new int[MAX_PLY][MAX_QUIET_MOVES];
+
+    private final MoveList<RootEntry> rootMoves =
+        new MoveList<>(RootEntry.class);
+    private final int[] multiPvValues = new int[rootMoves.entries.length];
+    private final MoveVariation[] pv = new MoveVariation[MAX_PLY + 1];
+
+    // Only the worker itself counts its nodes, but other threads read them
+    private volatile long nodes;
+
+    // The helper thread waits for this signal to start a search
+    private final Semaphore startSignal = new Semaphore(0);
+    private Thread thread;
+    private volatile boolean searching = false;
+    private volatile boolean retired = false;
+
+    // The depth of the current iteration
+    private int rootDepth;
+
+    // The result of the last iteration
+    private int completedDepth;
+    private int bestMove;
+    private int bestValue;
+    private int ponderMove;
+
+    private Worker(int id) {
+      this.id = id;
+
+      for (int i = 0; i < MAX_PLY; ++i) {
+        movePickers[i] = new MovePicker(history);
+      }
+
+      for (int i = 0; i < pv.length; ++i) {
+        pv[i] = new MoveVariation();
+      }
+
+      Arrays.fill(excludedMoves, NOMOVE);
+    }
 
-    @Override
+    private boolean isMain() {
+      return id == 0;
+    }
+
+    private void reset() {
+      rootMoves.size = 0;
+      nodes = 0;
+      completedDepth = 0;
+      bestMove = NOMOVE;
+      bestValue = -INFINITE;
+      ponderMove = NOMOVE;
+
+      for (int[] killer : killers) {
+        killer[0] = NOMOVE;
+        killer[1] = NOMOVE;
+      }
+    }
+
+    /**
+     * Prepares a helper worker with its own copy of the root position and the
+     * root moves of the main worker.
+     */
+    private void copyFrom(@NotNull Worker mainWorker) {
+      reset();
+
+      position = new Position(mainWorker.position);
+      evaluation.prepare(position);
+
+      MoveList<RootEntry> moves = mainWorker.rootMoves;
+      for (int i = 0; i < moves.size; ++i) {
+        int move = moves.entries[i].move;
+        rootMoves.entries[i].move = move;
+        rootMoves.entries[i].pv.moves[0] = move;
+        rootMoves.entries[i].pv.size = 1;
+      }
+      rootMoves.size = moves.size;
+    }
+
+    /**
+     * Starts the thread of a helper worker.
+     */
+    private void startThread() {
+      thread = new Thread(this);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Lets the thread of a helper worker die and waits for it.
+     */
+    private void stopThread() {
+      retired = true;
+      startSignal.release();
+
+      try {
+        thread.join(5000);
+      } catch (InterruptedException e) {
+        // Do nothing
+      }
+    }
+
+    /**
+     * The thread of a helper worker waits for the start signal, searches and
+     * tells the main worker when it has finished.
+     */
     public void run() {
-      timerStopped = true;
+      while (true) {
+        try {
+          startSignal.acquire();
+        } catch (InterruptedException e) {
+          // Do nothing
+        }
 
-      // If we finished the first iteration, we should have a result.
-      // In this case abort the search.
-      if (!doTimeManagement || currentDepth > initialDepth) {
+        if (retired) {
+          break;
+        }
+
+        iterateHelper();
+
+        searching = false;
+        helperSignal.release();
+      }
+    }
+
+    /**
+     * This is the iterative deepening loop of a helper worker.
+     */
+    private void iterateHelper() {
+      int index = (id - 1) % SKIP_SIZE.length;
+
+      for (int depth = initialDepth; depth <= searchDepth; ++depth) {
+        if (((depth + SKIP_PHASE[index]) / SKIP_SIZE[index]) % 2 != 0) {
+          continue;
+        }
+
+        iterate(depth);
+
+        if (abort) {
+          break;
+        }
+      }
+    }
+
+    private void iterate(int depth) {
+      rootDepth = depth;
+
+      // Search a small window around the last value first. If the value lies
+      // outside, widen the window on that side and search again. In MultiPV
+      // mode we need the exact values of several moves, so we use the full
+      // window.
+      int alpha = -INFINITE;
+      int beta = INFINITE;
+      int delta = ASPIRATION_WINDOW;
+      if (aspirationWindows && multiPv == 1 && depth >= ASPIRATION_DEPTH
+          && bestMove != NOMOVE && !isCheckmate(bestValue)) {
+        alpha = max(bestValue - delta, -INFINITE);
+        beta = min(bestValue + delta, INFINITE);
+      }
+
+      while (true) {
+        int value = searchRoot(depth, alpha, beta);
+
+        // Sort the root move list, so that next iteration begins with the
+        // best move first.
+        rootMoves.sort();
+
+        if (abort) {
+          break;
+        }
+
+        if (value <= alpha && alpha > -INFINITE) {
+          // Fail-low
+          alpha = max(value - delta, -INFINITE);
+        } else if (value >= beta && beta < INFINITE) {
+          // Fail-high
+          beta = min(value + delta, INFINITE);
+        } else {
+          break;
+        }
+        delta *= 2;
+      }
+
+      // Report all variations in the order of their values
+      if (isMain() && multiPv > 1 && !abort) {
+        for (int i = 0; i < min(multiPv, rootMoves.size); ++i) {
+          protocol.sendMove(rootMoves.entries[i], i + 1, currentDepth,
+              currentMaxDepth, totalNodes);
+        }
+      }
+
+      // Remember our result
+      if (rootMoves.size > 0 && rootMoves.entries[0].value != -INFINITE
+          && rootMoves.entries[0].bound != UPPER) {
+        RootEntry entry = rootMoves.entries[0];
+        bestMove = entry.move;
+        bestValue = entry.value;
+        ponderMove = entry.pv.size >= 2 ? entry.pv.moves[1] : NOMOVE;
+      }
+      if (!abort) {
+        completedDepth = depth;
+      }
+    }
+
+    private void updateSearch(int ply) {
+      ++nodes;
+
+      if (isMain()) {
+        if (ply > currentMaxDepth) {
+          currentMaxDepth = ply;
+        }
+
+        // Only collect the nodes of our helpers every now and then.
+        if (workers.length > 1 && (nodes & NODES_CHECK_MASK) == 0) {
+          totalNodes = getTotalNodes();
+        } else {
+          ++totalNodes;
+        }
+
+        if (searchNodes <= totalNodes) {
+          // Hard stop on number of nodes
+          abort = true;
+        }
+
+        if (--nodesUntilCheck <= 0) {
+          checkClock();
+        }
+      } else if ((nodes & NODES_CHECK_MASK) == 0
+          && searchNodes <= getTotalNodes()) {
         abort = true;
       }
+
+      pv[ply].size = 0;
+    }
+
+    /**
+     * Searches all root moves and returns the best value. If the value is
+     * outside the window, only the first root move has a value and its
+     * bound.
+     */
+    private int searchRoot(int depth, int alpha, int beta) {
+      int ply = 0;
+
+      updateSearch(ply);
+
+      // Abort conditions
+      if (abort) {
+        return -INFINITE;
+      }
+
+      // Reset all values, so the best move is pushed to the front
+      for (int i = 0; i < rootMoves.size; ++i) {
+        rootMoves.entries[i].value = -INFINITE;
+        rootMoves.entries[i].bound = EXACT;
+        rootMoves.entries[i].nodes = 0;
+      }
+
+      int bestValue = -INFINITE;
+      int bestMove = NOMOVE;
+      int oldAlpha = alpha;
+
+      // In MultiPV mode the first moves get exact values. Every other move
+      // only has to beat the worst of the best moves searched so far.
+      int multiPvSize = min(multiPv, rootMoves.size);
+
+      for (int i = 0; i < rootMoves.size; ++i) {
+        int move = rootMoves.entries[i].move;
+        int moveAlpha = multiPvSize > 1
+            ? getMultiPvAlpha(i, multiPvSize, oldAlpha) : alpha;
+
+        if (isMain()) {
+          currentMove = move;
+          currentMoveNumber = i + 1;
+          protocol.sendStatus(false, currentDepth, currentMaxDepth, totalNodes,
+              currentMove, currentMoveNumber);
+        }
+        long moveNodes = nodes;
+        playedMoves[ply] = move;
+        position.makeMove(move);
+        int value = searchMove(i < multiPvSize, depth - 1, moveAlpha, beta,
+            ply + 1);
+        rootMoves.entries[i].nodes += nodes - moveNodes;
+        if (depth >= 6 && isMain()) {
+          logger.debug("Check searchRoot Result: depth=" + depth + ", fen="
+              + fromPosition(position) + ", value=" + value);
+        }
+        position.undoMove(move);
+
+        if (abort) {
+          return bestValue;
+        }
+
+        if (value > bestValue) {
+          bestValue = value;
+        }
+
+        // Do we have a better value?
+        if (value > moveAlpha) {
+          RootEntry entry = rootMoves.entries[i];
+          entry.value = value;
+          entry.bound = value >= beta ? LOWER : EXACT;
+          savePV(move, pv[ply + 1], entry.pv);
+
+          if (value > alpha) {
+            alpha = value;
+
+            // We found a new best move
+            bestMove = move;
+
+            if (isMain() && multiPvSize == 1) {
+              protocol.sendMove(entry, 1, currentDepth, currentMaxDepth,
+                  totalNodes);
+            }
+          }
+
+          if (value >= beta) {
+            // Fail-high. We will search again with a wider window.
+            break;
+          }
+        }
+      }
+
+      if (rootMoves.size == 0) {
+        // The root position is a checkmate or stalemate. We cannot search
+        // further. Abort!
+        abort = true;
+      } else {
+        if (bestMove == NOMOVE) {
+          // Fail-low. Keep the first move in front and report its upper
+          // bound.
+          RootEntry entry = rootMoves.entries[0];
+          entry.value = bestValue;
+          entry.bound = UPPER;
+          if (isMain()) {
+            protocol.sendMove(entry, 1, currentDepth, currentMaxDepth,
+                totalNodes);
+          }
+        }
+
+        storeEntry(depth, bestMove, bestValue, oldAlpha, beta, ply);
+      }
+
+      return bestValue;
+    }
+
+    /**
+     * Returns the value the root move at the index must beat to be among the
+     * best multiPv moves. The moves before the index have been searched.
+     */
+    private int getMultiPvAlpha(int index, int multiPv, int alpha) {
+      if (index < multiPv) {
+        return alpha;
+      }
+
+      int[] values = multiPvValues;
+      for (int i = 0; i < index; ++i) {
+        values[i] = rootMoves.entries[i].value;
+      }
+      Arrays.sort(values, 0, index);
+
+      return max(alpha, values[index - multiPv]);
+    }
+
+    /**
+     * Searches the move we just made. The first move is searched with the
+     * full window. We expect all other moves to be worse, so we only prove
+     * that with a null window and search them again if they are not.
+     * (Principal variation search)
+     *
+     * @return the value from our perspective.
+     */
+    private int searchMove(boolean isFirst, int depth, int alpha, int beta,
+        int ply) {
+      if (isFirst) {
+        return -search(depth, -beta, -alpha, ply);
+      }
+
+      int value = -search(depth, -alpha - 1, -alpha, ply);
+      if (value > alpha && value < beta) {
+        value = -search(depth, -beta, -alpha, ply);
+      }
+
+      return value;
+    }
+
+    private int search(int depth, int alpha, int beta, int ply) {
+      // We are at a leaf/horizon. So calculate that value.
+      if (depth <= 0) {
+        // Descend into quiescent
+        return quiescent(0, alpha, beta, ply);
+      }
+
+      updateSearch(ply);
+
+      // Abort conditions
+      if (abort || ply == MAX_PLY) {
+        return evaluation.evaluate(position);
+      }
+
+      // Check insufficient material, repetition and fifty move rule
+      if (position.isRepetition()
+          || position.hasInsufficientMaterial()
+          || position.halfmoveClock >= 100) {
+        return DRAW;
+      }
+
+      //### BEGIN Mate distance pruning
+      // Even if we mate in the next move, we cannot beat a shorter mate
+      // found before
+      alpha = max(alpha, -CHECKMATE + ply);
+      beta = min(beta, CHECKMATE - (ply + 1));
+      if (alpha >= beta) {
+        return alpha;
+      }
+      //### ENDOF Mate distance pruning
+
+      // The entry is not valid for a search without the excluded move
+      int excludedMove = excludedMoves[ply];
+
+      //### BEGIN Transposition table
+      int hashMove = NOMOVE;
+      long entry = transpositionTable.probe(position.zobristKey);
+      if (entry != NOENTRY) {
+        hashMove = TranspositionTable.getMove(entry);
+
+        if (TranspositionTable.getDepth(entry) >= depth
+            && excludedMove == NOMOVE) {
+          int value = probeCutoff(entry, alpha, beta, ply);
+          if (value != NOVALUE) {
+            return value;
+          }
+        }
+      }
+      //### ENDOF Transposition table
+
+      // Initialize
+      int bestValue = -INFINITE;
+      int bestMove = NOMOVE;
+      int oldAlpha = alpha;
+      int searchedMoves = 0;
+      boolean isCheck = position.isCheck();
+      int previousMove = playedMoves[ply - 1];
+      int[] quietMoves = this.quietMoves[ply];
+      int quietMovesSize = 0;
+
+      // We only prune in null window nodes, the PV must be exact
+      boolean isPv = beta - alpha > 1;
+      boolean isPrunable = !isPv && !isCheck && excludedMove == NOMOVE
+          && abs(beta) < CHECKMATE_THRESHOLD;
+      int staticValue = isPrunable ? evaluation.evaluate(position) : NOVALUE;
+
+      //### BEGIN Reverse futility pruning
+      // If we are far above beta, the opponent will not catch up in the few
+      // plies left.
+      if (reverseFutilityPruning && isPrunable
+          && depth <= REVERSE_FUTILITY_DEPTH
+          && staticValue - REVERSE_FUTILITY_MARGIN * depth >= beta) {
+        return staticValue - REVERSE_FUTILITY_MARGIN * depth;
+      }
+      //### ENDOF Reverse futility pruning
+
+      //### BEGIN Razoring
+      // If we are far below alpha, only captures might save us. Quiescent
+      // search does not try quiet checks, so we miss a quiet mate in the
+      // next ply, e.g. a smothered mate after a queen sacrifice. We find it
+      // an iteration or two later, but razoring saves far more nodes in the
+      // many lost positions than these lines cost.
+      if (razoring && isPrunable && depth < RAZORING_MARGIN.length
+          && staticValue + RAZORING_MARGIN[depth] <= alpha) {
+        int value = quiescent(0, alpha, alpha + 1, ply);
+        if (value <= alpha) {
+          return value;
+        }
+      }
+      //### ENDOF Razoring
+
+      //### BEGIN Null move pruning
+      // If passing the move still fails high, a real move will do so as
+      // well. We don't pass twice in a row and don't pass in pawn endings,
+      // where zugzwang is common.
+      if (nullMovePruning && isPrunable && depth >= NULL_MOVE_DEPTH
+          && staticValue >= beta && previousMove != NOMOVE
+          && position.hasNonPawnMaterial(position.activeColor)) {
+        int reduction = 2 + depth / 6;
+
+        playedMoves[ply] = NOMOVE;
+        position.makeNullMove();
+        int value = -search(depth - 1 - reduction, -beta, -beta + 1, ply + 1);
+        position.undoNullMove();
+
+        if (abort) {
+          return value;
+        }
+
+        if (value >= beta) {
+          // Don't trust a mate found without a move
+          return isCheckmate(value) ? beta : value;
+        }
+      }
+      //### ENDOF Null move pruning
+
+      //### BEGIN Singular extension
+      // If all other moves fail low against a margin below the value of the
+      // hash move, the hash move is forced and we search it deeper
+      int singularMove = NOMOVE;
+      if (depth >= SINGULAR_DEPTH && excludedMove == NOMOVE
+          && hashMove != NOMOVE
+          && TranspositionTable.getBound(entry) != UPPER
+          && TranspositionTable.getDepth(entry)
+          >= depth - SINGULAR_TABLE_DEPTH) {
+        int hashValue = TranspositionTable.getValue(entry, ply);
+        if (abs(hashValue) < CHECKMATE_THRESHOLD) {
+          int singularBeta = hashValue - 2 * depth;
+
+          excludedMoves[ply] = hashMove;
+          int value = search(depth / 2, singularBeta - 1, singularBeta, ply);
+          excludedMoves[ply] = NOMOVE;
+
+          if (abort) {
+            return value;
+          }
+
+          if (value < singularBeta) {
+            singularMove = hashMove;
+          }
+        }
+      }
+      //### ENDOF Singular extension
+
+      // Quiet moves near the horizon cannot raise a value far below alpha
+      boolean isFutile = futilityPruning && isPrunable
+          && depth < FUTILITY_MARGIN.length
+          && staticValue + FUTILITY_MARGIN[depth] <= alpha;
+
+      MovePicker movePicker = movePickers[ply];
+      movePicker.init(position, depth, isCheck, hashMove, killers[ply][0],
+          killers[ply][1], history.getCounterMove(previousMove));
+      for (int move = movePicker.next(); move != NOMOVE;
+          move = movePicker.next()) {
+        if (move == excludedMove) {
+          continue;
+        }
+
+        int value = bestValue;
+        boolean isQuiet = !MovePicker.isCapture(move)
+            && Move.getType(move) != PAWNPROMOTION;
+
+        playedMoves[ply] = move;
+        position.makeMove(move);
+        boolean isLegal = !position.isCheck(opposite(position.activeColor));
+        if (isLegal) {
+          ++searchedMoves;
+          boolean givesCheck = position.isCheck();
+
+          if (isFutile && searchedMoves > 1 && isQuiet && !givesCheck) {
+            // Futility pruning
+            position.undoMove(move);
+            continue;
+          }
+
+          if (lateMoveReductions && depth >= LMR_DEPTH
+              && searchedMoves > LMR_MOVES && isQuiet && !isCheck
+              && !givesCheck && move != killers[ply][0]
+              && move != killers[ply][1]) {
+            value = searchReduced(move, isPv, depth, searchedMoves, alpha,
+                beta, ply);
+          } else {
+            // Extend checks and the singular move
+            boolean isExtended = (givesCheck || move == singularMove)
+                && ply < MAX_EXTENSION_FACTOR * rootDepth;
+            int newDepth = isExtended ? depth : depth - 1;
+            value = searchMove(searchedMoves == 1, newDepth, alpha, beta,
+                ply + 1);
+          }
+        }
+        position.undoMove(move);
+
+        if (abort) {
+          return bestValue;
+        }
+
+        // Pruning
+        if (value > bestValue) {
+          bestValue = value;
+
+          // Do we have a better value?
+          if (value > alpha) {
+            alpha = value;
+            bestMove = move;
+            savePV(move, pv[ply + 1], pv[ply]);
+
+            // Is the value higher than beta?
+            if (value >= beta) {
+              // Cut-off
+              if (!MovePicker.isCapture(move)) {
+                updateKillers(move, ply);
+                history.update(move, previousMove, depth, quietMoves,
+                    quietMovesSize);
+              }
+              break;
+            }
+          }
+        }
+
+        if (isLegal && !MovePicker.isCapture(move)
+            && quietMovesSize < MAX_QUIET_MOVES) {
+          quietMoves[quietMovesSize++] = move;
+        }
+      }
+
+      if (excludedMove != NOMOVE) {
+        // The excluded move is our only move, so it is singular. The value
+        // is not valid for the position, so we don't store it.
+        return searchedMoves == 0 ? alpha : bestValue;
+      }
+
+      // If we cannot move, check for checkmate and stalemate.
+      if (searchedMoves == 0) {
+        if (isCheck) {
+          // We have a check mate. This is bad for us, so return a -CHECKMATE.
+          bestValue = -CHECKMATE + ply;
+        } else {
+          // We have a stale mate. Return the draw value.
+          bestValue = DRAW;
+        }
+      }
+
+      storeEntry(depth, bestMove, bestValue, oldAlpha, beta, ply);
+
+      return bestValue;
+    }
+
+    /**
+     * Searches a late quiet move we just made with a reduced depth and a
+     * null window. We reduce moves with a bad history more and moves with a
+     * good history less. Only if the move beats alpha, we search it again
+     * with the full depth. (Late move reductions)
+     *
+     * @return the value from our perspective.
+     */
+    private int searchReduced(int move, boolean isPv, int depth,
+        int moveNumber, int alpha, int beta, int ply) {
+      int reduction = reductions[min(depth, reductions.length - 1)]
+          [min(moveNumber, reductions.length - 1)];
+      int historyValue = history.get(move);
+      if (historyValue < 0) {
+        ++reduction;
+      } else if (historyValue > History.MAX_VALUE / 2) {
+        --reduction;
+      }
+      if (isPv) {
+        --reduction;
+      }
+      reduction = max(0, min(reduction, depth - 2));
+
+      if (reduction > 0) {
+        int value = -search(depth - 1 - reduction, -alpha - 1, -alpha,
+            ply + 1);
+        if (value <= alpha || abort) {
+          return value;
+        }
+      }
+
+      return searchMove(false, depth - 1, alpha, beta, ply + 1);
+    }
+
+    private int quiescent(int depth, int alpha, int beta, int ply) {
+      updateSearch(ply);
+
+      // Abort conditions
+      if (abort || ply == MAX_PLY) {
+        return evaluation.evaluate(position);
+      }
+
+      // Check insufficient material, repetition and fifty move rule
+      if (position.isRepetition()
+          || position.hasInsufficientMaterial()
+          || position.halfmoveClock >= 100) {
+        return DRAW;
+      }
+
+      //### BEGIN Transposition table
+      int hashMove = NOMOVE;
+      long entry = transpositionTable.probe(position.zobristKey);
+      if (entry != NOENTRY) {
+        hashMove = TranspositionTable.getMove(entry);
+
+        if (TranspositionTable.getDepth(entry) >= depth) {
+          int value = probeCutoff(entry, alpha, beta, ply);
+          if (value != NOVALUE) {
+            return value;
+          }
+        }
+      }
+      //### ENDOF Transposition table
+
+      // Initialize
+      int bestValue = -INFINITE;
+      int bestMove = NOMOVE;
+      int oldAlpha = alpha;
+      int searchedMoves = 0;
+      boolean isCheck = position.isCheck();
+
+      //### BEGIN Stand pat
+      if (!isCheck) {
+        bestValue = evaluation.evaluate(position);
+
+        // Do we have a better value?
+        if (bestValue > alpha) {
+          alpha = bestValue;
+
+          // Is the value higher than beta?
+          if (bestValue >= beta) {
+            // Cut-off
+            storeEntry(depth, NOMOVE, bestValue, oldAlpha, beta, ply);
+            return bestValue;
+          }
+        }
+      }
+      //### ENDOF Stand pat
+
+      MovePicker movePicker = movePickers[ply];
+      movePicker.init(position, depth, isCheck, hashMove, NOMOVE, NOMOVE,
+          NOMOVE);
+      for (int move = movePicker.next(); move != NOMOVE;
+          move = movePicker.next()) {
+        int value = bestValue;
+
+        position.makeMove(move);
+        if (!position.isCheck(opposite(position.activeColor))) {
+          ++searchedMoves;
+          value = -quiescent(depth - 1, -beta, -alpha, ply + 1);
+        }
+        position.undoMove(move);
+
+        if (abort) {
+          return bestValue;
+        }
+
+        // Pruning
+        if (value > bestValue) {
+          bestValue = value;
+
+          // Do we have a better value?
+          if (value > alpha) {
+            alpha = value;
+            bestMove = move;
+            savePV(move, pv[ply + 1], pv[ply]);
+
+            // Is the value higher than beta?
+            if (value >= beta) {
+              // Cut-off
+              break;
+            }
+          }
+        }
+      }
+
+      // If we cannot move, check for checkmate.
+      if (searchedMoves == 0 && isCheck) {
+        // We have a check mate. This is bad for us, so return a -CHECKMATE.
+        bestValue = -CHECKMATE + ply;
+      }
+
+      storeEntry(depth, bestMove, bestValue, oldAlpha, beta, ply);
+
+      return bestValue;
+    }
+
+    private void updateKillers(int move, int ply) {
+      int[] killer = killers[ply];
+      if (killer[0] != move) {
+        killer[1] = killer[0];
+        killer[0] = move;
+      }
+    }
+
+    /**
+     * Returns the value of the transposition table entry if it causes a
+     * cut-off for the window, or NOVALUE otherwise.
+     */
+    private int probeCutoff(long entry, int alpha, int beta, int ply) {
+      int value = TranspositionTable.getValue(entry, ply);
+
+      switch (TranspositionTable.getBound(entry)) {
+        case EXACT:
+          int hashMove = TranspositionTable.getMove(entry);
+          if (hashMove != NOMOVE) {
+            pv[ply].moves[0] = hashMove;
+            pv[ply].size = 1;
+          }
+          return value;
+        case LOWER:
+          return value >= beta ? value : NOVALUE;
+        case UPPER:
+          return value <= alpha ? value : NOVALUE;
+        default:
+          return NOVALUE;
+      }
+    }
+
+    private void storeEntry(int depth, int bestMove, int bestValue, int alpha,
+        int beta, int ply) {
+      int bound;
+      if (bestValue >= beta) {
+        bound = LOWER;
+      } else if (bestValue > alpha) {
+        bound = EXACT;
+      } else {
+        bound = UPPER;
+      }
+
+      transpositionTable.store(position.zobristKey, bestMove, depth, bound,
+          bestValue, ply);
     }
   }
 
@@ -122,7 +1064,7 @@ final class Search implements Runnable {
 
     this.position = position;
     this.searchTime = searchTime;
-    this.timer = new Timer(true);
+    this.isTimed = true;
   }
 
   void newInfiniteSearch(@NotNull Position position) {
@@ -138,7 +1080,7 @@ final class Search implements Runnable {
       int movesToGo) {
     newPonderSearch(position, whiteTimeLeft, whiteTimeIncrement, blackTimeLeft,
         blackTimeIncrement, movesToGo);
-    this.timer = new Timer(true);
+    this.isTimed = true;
   }
 
   void newPonderSearch(@NotNull Position position, long whiteTimeLeft,
@@ -165,22 +1107,10 @@ final class Search implements Runnable {
       timeIncrement = blackTimeIncrement;
     }
 
-    // Don't use all of our time. Search only for 95%. Always leave 1 second as
-    // buffer time.
-    long maxSearchTime = (long) (timeLeft * 0.95) - 1000L;
-    if (maxSearchTime < 1) {
-      // We don't have enough time left. Search only for 1 millisecond, meaning
-      // get a result as fast as we can.
-      maxSearchTime = 1;
-    }
-
-    // Assume that we still have to do movesToGo number of moves. For every next
-    // move (movesToGo - 1) we will receive a time increment.
-    this.searchTime = (maxSearchTime + (movesToGo - 1) * timeIncrement)
-        / movesToGo;
-    if (this.searchTime > maxSearchTime) {
-      this.searchTime = maxSearchTime;
-    }
+    // We abort the search at the hard limit. The soft limit is checked after
+    // every iteration.
+    timeManager.init(timeLeft, timeIncrement, movesToGo);
+    this.searchTime = timeManager.getMaximumTime();
 
     this.doTimeManagement = true;
   }
@@ -189,28 +1119,149 @@ final class Search implements Runnable {
     this.protocol = protocol;
     this.evaluation = evaluation;
 
-    for (int i = 0; i < MAX_PLY; ++i) {
-      moveGenerators[i] = new MoveGenerator();
+    reset();
+
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  void setHashSize(int megabytes) {
+    checkState(!running);
+
+    transpositionTable.resize(megabytes);
+  }
+
+  /**
+   * Sets the number of search threads including our main search thread.
+   */
+  void setThreads(int threads) {
+    checkArgument(threads >= MIN_THREADS && threads <= MAX_THREADS);
+    checkState(!running);
+
+    if (threads != workers.length) {
+      Worker[] newWorkers = new Worker[threads];
+      for (int i = 0; i < threads; ++i) {
+        if (i < workers.length) {
+          newWorkers[i] = workers[i];
+        } else {
+          newWorkers[i] = new Worker(i);
+          newWorkers[i].startThread();
+        }
+      }
+      for (int i = threads; i < workers.length; ++i) {
+        workers[i].stopThread();
+      }
+      workers = newWorkers;
     }
+  }
+
+  /**
+   * Sets the number of principal variations we search and report.
+   */
+  void setMultiPv(int multiPv) {
+    checkArgument(multiPv >= MIN_MULTI_PV && multiPv <= MAX_MULTI_PV);
+    checkState(!running);
 
-    for (int i = 0; i < pv.length; ++i) {
-      pv[i] = new MoveVariation();
+    this.multiPv = multiPv;
+  }
+
+  /**
+   * Enables or disables aspiration windows. Without them every iteration
+   * searches the full window.
+   */
+  void setAspirationWindows(boolean enabled) {
+    checkState(!running);
+
+    aspirationWindows = enabled;
+  }
+
+  /**
+   * Enables or disables one of the SELECTIVE_OPTIONS.
+   */
+  void setSelectiveOption(@NotNull String name, boolean enabled) {
+    checkState(!running);
+
+    switch (name) {
+      case NULL_MOVE_PRUNING:
+        nullMovePruning = enabled;
+        break;
+      case LATE_MOVE_REDUCTIONS:
+        lateMoveReductions = enabled;
+        break;
+      case FUTILITY_PRUNING:
+        futilityPruning = enabled;
+        break;
+      case REVERSE_FUTILITY_PRUNING:
+        reverseFutilityPruning = enabled;
+        break;
+      case RAZORING:
+        razoring = enabled;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown option: " + name);
     }
+  }
 
-    reset();
+  void newGame() {
+    checkState(!running);
 
-    thread.setDaemon(true);
-    thread.start();
+    transpositionTable.clear();
+    for (Worker worker : workers) {
+      worker.history.clear();
+    }
+  }
+
+  /**
+   * Returns whether the last search reached its deadline.
+   */
+  boolean isTimerStopped() {
+    return timerStopped;
+  }
+
+  int getHashfull() {
+    return transpositionTable.getHashfull();
+  }
+
+  /**
+   * Returns the number of nodes searched by all workers.
+   */
+  private long getTotalNodes() {
+    long nodes = 0;
+    for (Worker worker : workers) {
+      nodes += worker.nodes;
+    }
+
+    return nodes;
+  }
+
+  /**
+   * Returns whether one of our helpers is still searching.
+   */
+  boolean isHelperSearching() {
+    for (int i = 1; i < workers.length; ++i) {
+      if (workers[i].searching) {
+        return true;
+      }
+    }
+
+    return false;
   }
 
   private void reset() {
     searchDepth = MAX_DEPTH;
     searchNodes = Long.MAX_VALUE;
     searchTime = 0;
-    timer = null;
+    isTimed = false;
+    deadline = 0;
     timerStopped = false;
     doTimeManagement = false;
-    rootMoves.size = 0;
+    checkNodes = MIN_CHECK_NODES;
+    nodesUntilCheck = MIN_CHECK_NODES;
+    lastCheckTime = System.nanoTime();
+    for (Worker worker : workers) {
+      worker.reset();
+      worker.history.age();
+    }
     abort = false;
     totalNodes = 0;
     currentDepth = initialDepth;
@@ -246,8 +1297,9 @@ final class Search implements Runnable {
   synchronized void ponderHit() {
     if (running) {
       // Enable time management
-      timer = new Timer(true);
-      timer.schedule(new SearchTimer(), searchTime);
+      startTime = System.nanoTime();
+      deadline = startTime + searchTime * 1_000_000;
+      isTimed = true;
 
       // If we finished the first iteration, we should have a result.
       // In this case check the stop conditions.
@@ -263,6 +1315,10 @@ final class Search implements Runnable {
     shutdown = true;
     wakeupSignal.release();
 
+    for (int i = 1; i < workers.length; ++i) {
+      workers[i].stopThread();
+    }
+
     // Wait for the thread to die
     try {
       thread.join(5000);
@@ -284,13 +1340,21 @@ final class Search implements Runnable {
       }
 
       // Do all initialization before releasing the main thread to JCPI
-      if (timer != null) {
-        timer.schedule(new SearchTimer(), searchTime);
+      if (isTimed) {
+        startTime = System.nanoTime();
+        deadline = startTime + searchTime * 1_000_000;
       }
 
+      transpositionTable.newSearch();
+
+      Worker mainWorker = workers[0];
+      mainWorker.position = position;
+      evaluation.prepare(position);
+
       // Populate root move list
-      MoveList<MoveEntry> moves = moveGenerators[0].getLegalMoves(position, 1,
-          position.isCheck());
+      MoveList<MoveEntry> moves = mainWorker.moveGenerator.getLegalMoves(
+          position, 1, position.isCheck());
+      MoveList<RootEntry> rootMoves = mainWorker.rootMoves;
       for (int i = 0; i < moves.size; ++i) {
         int move = moves.entries[i].move;
         rootMoves.entries[rootMoves.size].move = move;
@@ -299,11 +1363,21 @@ final class Search implements Runnable {
         ++rootMoves.size;
       }
 
+      // Prepare our helpers
+      for (int i = 1; i < workers.length; ++i) {
+        workers[i].copyFrom(mainWorker);
+      }
+
       // Go...
       stopSignal.drainPermits();
       running = true;
       runSignal.release();
 
+      for (int i = 1; i < workers.length; ++i) {
+        workers[i].searching = true;
+        workers[i].startSignal.release();
+      }
+
       //### BEGIN Iterative Deepening
       for (int depth = initialDepth; depth <= searchDepth; ++depth) {
         currentDepth = depth;
@@ -311,11 +1385,17 @@ final class Search implements Runnable {
         protocol.sendStatus(false, currentDepth, currentMaxDepth, totalNodes,
             currentMove, currentMoveNumber);
 
-        searchRoot(currentDepth, -INFINITE, INFINITE);
+        mainWorker.iterate(currentDepth);
 
-        // Sort the root move list, so that next iteration begins with the best
-        // move first.
-        rootMoves.sort();
+        if (doTimeManagement && !abort) {
+          long iterationNodes = 0;
+          for (int i = 0; i < rootMoves.size; ++i) {
+            iterationNodes += rootMoves.entries[i].nodes;
+          }
+          RootEntry bestEntry = rootMoves.entries[0];
+          timeManager.update(bestEntry.move, bestEntry.value, bestEntry.nodes,
+              iterationNodes);
+        }
 
         checkStopConditions();
 
@@ -325,11 +1405,16 @@ final class Search implements Runnable {
       }
       //### ENDOF IterativeDeepening
 
-      if (timer != null) {
-        timer.cancel();
+      // Stop our helpers
+      abort = true;
+      try {
+        helperSignal.acquire(workers.length - 1);
+      } catch (InterruptedException e) {
+        // Do nothing
       }
 
       // Update all stats
+      totalNodes = getTotalNodes();
       protocol.sendStatus(true, currentDepth, currentMaxDepth, totalNodes,
           currentMove, currentMoveNumber);
 
@@ -337,270 +1422,125 @@ final class Search implements Runnable {
       int bestMove = NOMOVE;
       int ponderMove = NOMOVE;
       if (rootMoves.size > 0) {
-        bestMove = rootMoves.entries[0].move;
-        if (rootMoves.entries[0].pv.size >= 2) {
-          ponderMove = rootMoves.entries[0].pv.moves[1];
+        Worker bestWorker = selectBestWorker();
+        bestMove = bestWorker.bestMove;
+        ponderMove = bestWorker.ponderMove;
+
+        if (bestMove == NOMOVE) {
+          // We have not finished a single root move.
+          bestMove = rootMoves.entries[0].move;
         }
       }
 
+      // We are done before the GUI knows about it, so it can start the next
+      // search as soon as it gets the best move
+      running = false;
+
       // Send the best move to the GUI
       protocol.sendBestMove(bestMove, ponderMove);
 
-      running = false;
       stopSignal.release();
     }
   }
 
-  private void checkStopConditions() {
-    // We will check the stop conditions only if we are using time management,
-    // that is if our timer != null.
-    if (timer != null && doTimeManagement) {
-      if (timerStopped) {
-        abort = true;
-      } else {
-        // Check if we have only one move to make
-        if (rootMoves.size == 1) {
-          abort = true;
-        } else
-          // Check if we have a checkmate
-          if (isCheckmate(rootMoves.entries[0].value)
-              && currentDepth >= (CHECKMATE - abs(
-              rootMoves.entries[0].value))) {
-            abort = true;
-          }
-      }
-    }
-  }
-
-  private void updateSearch(int ply) {
-    ++totalNodes;
-
-    if (ply > currentMaxDepth) {
-      currentMaxDepth = ply;
-    }
-
-    if (searchNodes <= totalNodes) {
-      // Hard stop on number of nodes
-      abort = true;
-    }
-
-    pv[ply].size = 0;
-
-    protocol.sendStatus(currentDepth, currentMaxDepth, totalNodes, currentMove,
-        currentMoveNumber);
-  }
-
-  private void searchRoot(int depth, int alpha, int beta) {
-    int ply = 0;
-
-    updateSearch(ply);
-
-    // Abort conditions
-    if (abort) {
-      return;
-    }
-
-    // Reset all values, so the best move is pushed to the front
-    for (int i = 0; i < rootMoves.size; ++i) {
-      rootMoves.entries[i].value = -INFINITE;
+  /**
+   * Lets all workers vote for their best move. A vote is weighted by the
+   * depth and the value of the worker's result.
+   */
+  private Worker selectBestWorker() {
+    Worker bestWorker = workers[0];
+    if (workers.length == 1) {
+      return bestWorker;
     }
 
-    for (int i = 0; i < rootMoves.size; ++i) {
-      int move = rootMoves.entries[i].move;
-
-      currentMove = move;
-      currentMoveNumber = i + 1;
-      protocol.sendStatus(false, currentDepth, currentMaxDepth, totalNodes,
-          currentMove, currentMoveNumber);
-      position.makeMove(move);
-      int value = -search(depth - 1, -beta, -alpha, ply + 1);
-      if (depth >= 6) {
-        logger.debug("Check searchRoot Result: depth=" + depth + ", fen="
-            + fromPosition(position) + ", value=" + value);
-      }
-      position.undoMove(move);
-
-      if (abort) {
-        return;
-      }
-
-      // Do we have a better value?
-      if (value > alpha) {
-        alpha = value;
-
-        // We found a new best move
-        rootMoves.entries[i].value = value;
-        savePV(move, pv[ply + 1], rootMoves.entries[i].pv);
-
-        protocol.sendMove(rootMoves.entries[i], currentDepth, currentMaxDepth,
-            totalNodes);
+    int minValue = INFINITE;
+    for (Worker worker : workers) {
+      if (worker.bestMove != NOMOVE && worker.bestValue < minValue) {
+        minValue = worker.bestValue;
       }
     }
 
-    if (rootMoves.size == 0) {
-      // The root position is a checkmate or stalemate. We cannot search
-      // further. Abort!
-      abort = true;
-    }
-  }
-
-  private int search(int depth, int alpha, int beta, int ply) {
-    // We are at a leaf/horizon. So calculate that value.
-    if (depth <= 0) {
-      // Descend into quiescent
-      return quiescent(0, alpha, beta, ply);
-    }
-
-    updateSearch(ply);
-
-    // Abort conditions
-    if (abort || ply == MAX_PLY) {
-      return evaluation.evaluate(position);
-    }
-
-    // Check insufficient material, repetition and fifty move rule
-    if (position.isRepetition()
-        || position.hasInsufficientMaterial()
-        || position.halfmoveClock >= 100) {
-      return DRAW;
-    }
-
-    // Initialize
-    int bestValue = -INFINITE;
-    int searchedMoves = 0;
-    boolean isCheck = position.isCheck();
-
-    MoveList<MoveEntry> moves = moveGenerators[ply].getMoves(position, depth,
-        isCheck);
-    for (int i = 0; i < moves.size; ++i) {
-      int move = moves.entries[i].move;
-      int value = bestValue;
-
-      position.makeMove(move);
-      if (!position.isCheck(opposite(position.activeColor))) {
-        ++searchedMoves;
-        value = -search(depth - 1, -beta, -alpha, ply + 1);
+    long bestVotes = 0;
+    for (Worker worker : workers) {
+      if (worker.bestMove == NOMOVE) {
+        continue;
       }
-      position.undoMove(move);
 
-      if (abort) {
-        return bestValue;
-      }
-
-      // Pruning
-      if (value > bestValue) {
-        bestValue = value;
-
-        // Do we have a better value?
-        if (value > alpha) {
-          alpha = value;
-          savePV(move, pv[ply + 1], pv[ply]);
-
-          // Is the value higher than beta?
-          if (value >= beta) {
-            // Cut-off
-            break;
-          }
+      long votes = 0;
+      for (Worker voter : workers) {
+        if (voter.bestMove == worker.bestMove) {
+          votes += (long) (voter.bestValue - minValue + 14)
+              * (voter.completedDepth + 1);
         }
       }
-    }
 
-    // If we cannot move, check for checkmate and stalemate.
-    if (searchedMoves == 0) {
-      if (isCheck) {
-        // We have a check mate. This is bad for us, so return a -CHECKMATE.
-        return -CHECKMATE + ply;
-      } else {
-        // We have a stale mate. Return the draw value.
-        return DRAW;
+      // Our main worker wins all ties
+      if (votes > bestVotes) {
+        bestVotes = votes;
+        bestWorker = worker;
       }
     }
 
-    return bestValue;
+    return bestWorker;
   }
 
-  private int quiescent(int depth, int alpha, int beta, int ply) {
-    updateSearch(ply);
-
-    // Abort conditions
-    if (abort || ply == MAX_PLY) {
-      return evaluation.evaluate(position);
-    }
-
-    // Check insufficient material, repetition and fifty move rule
-    if (position.isRepetition()
-        || position.hasInsufficientMaterial()
-        || position.halfmoveClock >= 100) {
-      return DRAW;
+  /**
+   * Adapts the number of nodes until the next check, stops the search if we
+   * are out of time and sends our status. Only the main worker calls this.
+   */
+  private void checkClock() {
+    long now = System.nanoTime();
+    long elapsed = now - lastCheckTime;
+    if (elapsed < CHECK_INTERVAL / 2 && checkNodes < MAX_CHECK_NODES) {
+      checkNodes *= 2;
+    } else if (elapsed > CHECK_INTERVAL * 2 && checkNodes > MIN_CHECK_NODES) {
+      checkNodes /= 2;
     }
+    nodesUntilCheck = checkNodes;
+    lastCheckTime = now;
 
-    // Initialize
-    int bestValue = -INFINITE;
-    int searchedMoves = 0;
-    boolean isCheck = position.isCheck();
-
-    //### BEGIN Stand pat
-    if (!isCheck) {
-      bestValue = evaluation.evaluate(position);
-
-      // Do we have a better value?
-      if (bestValue > alpha) {
-        alpha = bestValue;
+    if (isTimed && now - deadline >= 0) {
+      timerStopped = true;
 
-        // Is the value higher than beta?
-        if (bestValue >= beta) {
-          // Cut-off
-          return bestValue;
-        }
+      // If we finished the first iteration, we should have a result.
+      // In this case abort the search.
+      if (!doTimeManagement || currentDepth > initialDepth) {
+        abort = true;
       }
     }
-    //### ENDOF Stand pat
-
-    MoveList<MoveEntry> moves = moveGenerators[ply].getMoves(position, depth,
-        isCheck);
-    for (int i = 0; i < moves.size; ++i) {
-      int move = moves.entries[i].move;
-      int value = bestValue;
 
-      position.makeMove(move);
-      if (!position.isCheck(opposite(position.activeColor))) {
-        ++searchedMoves;
-        value = -quiescent(depth - 1, -beta, -alpha, ply + 1);
-      }
-      position.undoMove(move);
-
-      if (abort) {
-        return bestValue;
-      }
-
-      // Pruning
-      if (value > bestValue) {
-        bestValue = value;
+    protocol.sendStatus(currentDepth, currentMaxDepth, totalNodes,
+        currentMove, currentMoveNumber);
+  }
 
-        // Do we have a better value?
-        if (value > alpha) {
-          alpha = value;
-          savePV(move, pv[ply + 1], pv[ply]);
+  private void checkStopConditions() {
+    MoveList<RootEntry> rootMoves = workers[0].rootMoves;
 
-          // Is the value higher than beta?
-          if (value >= beta) {
-            // Cut-off
-            break;
+    // We will check the stop conditions only if we are using time management,
+    // that is if we have a deadline.
+    if (isTimed && doTimeManagement) {
+      long now = System.nanoTime();
+      if (timerStopped || now - deadline >= 0) {
+        abort = true;
+      } else if ((now - startTime) / 1_000_000 >= timeManager.getSoftTime()) {
+        // Don't start a new iteration
+        abort = true;
+      } else {
+        // Check if we have only one move to make
+        if (rootMoves.size == 1) {
+          abort = true;
+        } else
+          // Check if we have a checkmate
+          if (isCheckmate(rootMoves.entries[0].value)
+              && currentDepth >= (CHECKMATE - abs(
+              rootMoves.entries[0].value))) {
+            abort = true;
           }
-        }
       }
     }
-
-    // If we cannot move, check for checkmate.
-    if (searchedMoves == 0 && isCheck) {
-      // We have a check mate. This is bad for us, so return a -CHECKMATE.
-      return -CHECKMATE + ply;
-    }
-
-    return bestValue;
   }
 
-  private void savePV(int move, MoveVariation src, MoveVariation dest) {
+  private static void savePV(int move, MoveVariation src, MoveVariation dest) {
     dest.moves[0] = move;
     System.arraycopy(src.moves, 0, dest.moves, 1, src.size);
     dest.size = src.size + 1;
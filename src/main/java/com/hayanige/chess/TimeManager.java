@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.hayanige.chess.Move.NOMOVE;
+import static com.hayanige.chess.Value.NOVALUE;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * This class decides how long we search in a game with a clock. The soft
+ * limit is checked after every iteration. If we used more time, we don't
+ * start a new iteration. The hard limit aborts the search in the middle of
+ * an iteration.
+ *
+ * The soft limit scales with the result of the last iteration. We need less
+ * time if the best move has been stable for some iterations and most of the
+ * nodes went into it. We need more time if the best move changes or its
+ * value drops.
+ */
+final class TimeManager {
+
+  static final int DEFAULT_MOVES_TO_GO = 40;
+
+  // Keep 5% of our time, but at most one second, as buffer
+  private static final long MAX_BUFFER_TIME = 1000;
+
+  // The hard limit is a multiple of the optimum time
+  private static final int MAX_TIME_FACTOR = 4;
+
+  private static final int MAX_STABILITY = 5;
+  private static final int MAX_VALUE_DROP = 100;
+
+  private long optimumTime;
+  private long maximumTime;
+  private long softTime;
+
+  private int lastBestMove;
+  private int lastBestValue;
+  private int stability;
+
+  /**
+   * Initializes the limits for a new search.
+   *
+   * @param timeLeft our time left in milliseconds.
+   * @param timeIncrement our increment per move in milliseconds.
+   * @param movesToGo the number of moves until the next time control or 0
+   *     if there is none.
+   */
+  void init(long timeLeft, long timeIncrement, int movesToGo) {
+    checkArgument(timeLeft >= 1);
+    checkArgument(timeIncrement >= 0);
+    checkArgument(movesToGo >= 0);
+
+    if (movesToGo == 0) {
+      movesToGo = DEFAULT_MOVES_TO_GO;
+    }
+
+    // Don't use all of our time. If we don't have enough time left, search
+    // only for 1 millisecond, meaning get a result as fast as we can.
+    long availableTime = max(1,
+        timeLeft - min(timeLeft / 20, MAX_BUFFER_TIME));
+
+    // Assume that we still have to do movesToGo number of moves. For every
+    // next move (movesToGo - 1) we will receive a time increment.
+    optimumTime = max(1, min(availableTime,
+        (availableTime + (movesToGo - 1) * timeIncrement) / movesToGo));
+    maximumTime = min(availableTime, optimumTime * MAX_TIME_FACTOR);
+    softTime = optimumTime;
+
+    lastBestMove = NOMOVE;
+    lastBestValue = NOVALUE;
+    stability = 0;
+  }
+
+  long getMaximumTime() {
+    return maximumTime;
+  }
+
+  long getSoftTime() {
+    return softTime;
+  }
+
+  /**
+   * Scales the soft limit with the result of an iteration.
+   *
+   * @param bestMoveNodes the nodes we searched for the best move.
+   * @param totalNodes the nodes we searched for all root moves.
+   */
+  void update(int bestMove, int bestValue, long bestMoveNodes,
+      long totalNodes) {
+    if (bestMove == lastBestMove) {
+      stability = min(stability + 1, MAX_STABILITY);
+    } else {
+      stability = 0;
+    }
+
+    // 1.5 for a new best move down to 1.0 for a stable one
+    double stabilityFactor = 1.5 - stability * 0.1;
+
+    // Up to 1.5 if the value dropped
+    double valueFactor = 1.0;
+    if (lastBestValue != NOVALUE && bestValue < lastBestValue) {
+      valueFactor += min(lastBestValue - bestValue, MAX_VALUE_DROP)
+          / (2.0 * MAX_VALUE_DROP);
+    }
+
+    // 0.5 if all nodes went into the best move up to 1.5 if none did
+    double nodesFactor = 1.0;
+    if (totalNodes > 0) {
+      nodesFactor = 1.5 - (double) bestMoveNodes / totalNodes;
+    }
+
+    softTime = min(maximumTime,
+        (long) (optimumTime * stabilityFactor * valueFactor * nodesFactor));
+
+    lastBestMove = bestMove;
+    lastBestValue = bestValue;
+  }
+}
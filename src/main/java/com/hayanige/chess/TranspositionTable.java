@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.hayanige.chess.Move.NOMOVE;
+import static com.hayanige.chess.Value.CHECKMATE_THRESHOLD;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a fixed-size transposition table. Every entry is
+ * packed into two longs, the key and the data. The key is stored XOR-ed with
+ * the data, so a torn write from another thread will simply look like a miss.
+ *
+ * The data fields are represented by the following bits.
+ *
+ *  0 - 29 : move
+ * 30 - 37 : depth (signed)
+ * 38 - 57 : value (signed)
+ * 58 - 59 : bound
+ * 60 - 63 : generation
+ */
+final class TranspositionTable {
+
+  static final int DEFAULT_SIZE = 16;
+  static final int MIN_SIZE = 1;
+  static final int MAX_SIZE = 4096;
+
+  // Bound types
+  static final int NOBOUND = 0;
+  static final int EXACT = 1;
+  static final int LOWER = 2;
+  static final int UPPER = 3;
+
+  static final long NOENTRY = 0;
+
+  private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+  // These are our bit masks
+  private static final int MOVE_SHIFT = 0;
+  private static final long MOVE_MASK = 0x3FFFFFFFL << MOVE_SHIFT;
+  private static final int DEPTH_SHIFT = 30;
+  private static final long DEPTH_MASK = 0xFFL << DEPTH_SHIFT;
+  private static final int VALUE_SHIFT = 38;
+  private static final long VALUE_MASK = 0xFFFFFL << VALUE_SHIFT;
+  private static final int BOUND_SHIFT = 58;
+  private static final long BOUND_MASK = 0x3L << BOUND_SHIFT;
+  private static final int GENERATION_SHIFT = 60;
+  private static final long GENERATION_MASK = 0xFL << GENERATION_SHIFT;
+
+  private long[] entries;
+  private int mask;
+  private int generation = 0;
+
+  TranspositionTable(int megabytes) {
+    resize(megabytes);
+  }
+
+  /**
+   * Resizes the table to the largest power of two number of entries which
+   * fits into the given number of megabytes. All entries are lost.
+   */
+  void resize(int megabytes) {
+    checkArgument(megabytes >= MIN_SIZE && megabytes <= MAX_SIZE);
+
+    long size = Long.highestOneBit(
+        (long) megabytes * 1024 * 1024 / ENTRY_SIZE);
+    entries = new long[(int) size * 2];
+    mask = (int) size - 1;
+    generation = 0;
+  }
+
+  void clear() {
+    Arrays.fill(entries, 0);
+    generation = 0;
+  }
+
+  /**
+   * Marks the start of a new search. Entries from older searches will be
+   * replaced first.
+   */
+  void newSearch() {
+    generation = (generation + 1) & 0xF;
+  }
+
+  /**
+   * Returns the data of the entry for the zobristKey or NOENTRY if there is
+   * no such entry.
+   */
+  long probe(long zobristKey) {
+    int index = ((int) zobristKey & mask) << 1;
+    long data = entries[index + 1];
+
+    if ((entries[index] ^ data) == zobristKey && data != NOENTRY) {
+      return data;
+    } else {
+      return NOENTRY;
+    }
+  }
+
+  void store(long zobristKey, int move, int depth, int bound, int value,
+      int ply) {
+    int index = ((int) zobristKey & mask) << 1;
+    long oldData = entries[index + 1];
+
+    if ((entries[index] ^ oldData) == zobristKey && oldData != NOENTRY) {
+      // Keep the deeper result of the same search
+      if (getGeneration(oldData) == generation && bound != EXACT
+          && depth < getDepth(oldData)) {
+        return;
+      }
+
+      // Keep the old move if we don't have a better one
+      if (move == NOMOVE) {
+        move = getMove(oldData);
+      }
+    }
+
+    long data = ((long) move << MOVE_SHIFT) & MOVE_MASK
+        | ((long) depth << DEPTH_SHIFT) & DEPTH_MASK
+        | ((long) toTableValue(value, ply) << VALUE_SHIFT) & VALUE_MASK
+        | ((long) bound << BOUND_SHIFT) & BOUND_MASK
+        | ((long) generation << GENERATION_SHIFT) & GENERATION_MASK;
+
+    entries[index] = zobristKey ^ data;
+    entries[index + 1] = data;
+  }
+
+  /**
+   * Returns how many entries out of 1000 are used by the current search.
+   */
+  int getHashfull() {
+    int size = Math.min(1000, mask + 1);
+    int used = 0;
+    for (int i = 0; i < size; ++i) {
+      long data = entries[(i << 1) + 1];
+      if (data != NOENTRY && getGeneration(data) == generation) {
+        ++used;
+      }
+    }
+
+    return used * 1000 / size;
+  }
+
+  static int getMove(long data) {
+    return (int) ((data & MOVE_MASK) >>> MOVE_SHIFT);
+  }
+
+  static int getDepth(long data) {
+    return (byte) ((data & DEPTH_MASK) >>> DEPTH_SHIFT);
+  }
+
+  static int getBound(long data) {
+    return (int) ((data & BOUND_MASK) >>> BOUND_SHIFT);
+  }
+
+  /**
+   * Returns the value of the entry relative to the current ply.
+   */
+  static int getValue(long data, int ply) {
+    // Sign extend the 20 bits value
+    int value = (int) (data << (64 - VALUE_SHIFT - 20) >> (64 - 20));
+
+    return fromTableValue(value, ply);
+  }
+
+  private static int getGeneration(long data) {
+    return (int) ((data & GENERATION_MASK) >>> GENERATION_SHIFT);
+  }
+
+  /**
+   * Mate values are stored as distance from the current node instead of
+   * distance from the root.
+   */
+  private static int toTableValue(int value, int ply) {
+    if (value >= CHECKMATE_THRESHOLD) {
+      return value + ply;
+    } else if (value <= -CHECKMATE_THRESHOLD) {
+      return value - ply;
+    } else {
+      return value;
+    }
+  }
+
+  private static int fromTableValue(int value, int ply) {
+    if (value >= CHECKMATE_THRESHOLD) {
+      return value - ply;
+    } else if (value <= -CHECKMATE_THRESHOLD) {
+      return value + ply;
+    } else {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Color.BLACK;
+import static com.hayanige.chess.Color.WHITE;
+import static com.hayanige.chess.Square.a1;
+import static com.hayanige.chess.Square.a8;
+import static com.hayanige.chess.Square.b2;
+import static com.hayanige.chess.Square.d4;
+import static com.hayanige.chess.Square.e4;
+import static com.hayanige.chess.Square.h1;
+import static com.hayanige.chess.Square.h8;
+import static java.lang.Long.bitCount;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestAttacks {
+
+  private static long bit(int square) {
+    return 1L << Bitboard.toBitSquare(square);
+  }
+
+  @Test
+  public void testNonSlidingAttacks() {
+    assertEquals(bitCount(Attacks.knight(a1)), 2);
+    assertEquals(bitCount(Attacks.knight(e4)), 8);
+    assertEquals(bitCount(Attacks.king(h8)), 3);
+    assertEquals(bitCount(Attacks.king(d4)), 8);
+    assertEquals(bitCount(Attacks.pawn(WHITE, a1)), 1);
+    assertEquals(Attacks.pawn(BLACK, a1), 0);
+  }
+
+  @Test
+  public void testSlidingAttacks() {
+    assertEquals(bitCount(Attacks.rook(a1, 0)), 14);
+    assertEquals(bitCount(Attacks.bishop(a1, 0)), 7);
+    assertEquals(bitCount(Attacks.queen(d4, 0)), 27);
+
+    // Blockers are attacked, but the squares behind them are not
+    assertEquals(Attacks.bishop(a1, bit(b2)), bit(b2));
+    assertEquals(Attacks.rook(a1, bit(a8) | bit(h1) | bit(b2)),
+        Attacks.rook(a1, 0));
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.Test;
+
+public class TestBench {
+
+  @Test
+  public void testSelectiveOptions() throws InterruptedException {
+    PrintStream out = new PrintStream(new ByteArrayOutputStream());
+
+    long nodes = Bench.run(new PulseEvaluation(), 5, new String[0], out);
+    long fullWidthNodes = Bench.run(new PulseEvaluation(), 5,
+        Search.SELECTIVE_OPTIONS, out);
+
+    assertTrue(nodes < fullWidthNodes);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class TestCachedEvaluation {
+
+  private static final class CountingEvaluation extends Evaluation {
+
+    private int calls = 0;
+
+    int evaluate(@NotNull Position position) {
+      ++calls;
+      return -position.material[position.activeColor];
+    }
+  }
+
+  @Test
+  public void testCache() {
+    CountingEvaluation counting = new CountingEvaluation();
+    CachedEvaluation evaluation = new CachedEvaluation(counting, 1);
+    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
+
+    int value = evaluation.evaluate(position);
+    assertEquals(evaluation.evaluate(position), value);
+    assertEquals(counting.calls, 1);
+    assertEquals(evaluation.getProbes(), 2);
+    assertEquals(evaluation.getHits(), 1);
+
+    // Another position is evaluated again
+    position.makeMove(Move.valueOf(MoveType.NORMAL, Square.e2, Square.e4,
+        Piece.WHITE_PAWN, Piece.NOPIECE, PieceType.NOPIECETYPE));
+    evaluation.evaluate(position);
+    assertEquals(counting.calls, 2);
+
+    evaluation.clear();
+    assertEquals(evaluation.evaluate(position), -position.material[
+        position.activeColor]);
+    assertEquals(counting.calls, 3);
+  }
+
+  @Test
+  public void testDisabled() {
+    CountingEvaluation counting = new CountingEvaluation();
+    CachedEvaluation evaluation = new CachedEvaluation(counting, 0);
+    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
+
+    evaluation.evaluate(position);
+    evaluation.evaluate(position);
+    assertEquals(counting.calls, 2);
+    assertEquals(evaluation.getProbes(), 0);
+  }
+}
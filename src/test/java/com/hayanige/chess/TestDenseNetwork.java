@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.junit.Test;
+
+public class TestDenseNetwork {
+
+  /**
+   * Returns a network with 2 inputs, 2 hidden ReLU units and 1 output.
+   */
+  private static DenseNetwork createNetwork() {
+    return new DenseNetwork(
+        new int[]{2, 2, 1},
+        new int[]{DenseNetwork.RELU, DenseNetwork.IDENTITY},
+        new float[][]{{1, -1, 2, 1}, {3, 4}},
+        new float[][]{{0, 0}, {1}});
+  }
+
+  @Test
+  public void testOutput() {
+    DenseNetwork network = createNetwork();
+    float[][] buffers = network.createBuffers();
+
+    // hidden = relu(1 * 1 + 2 * 2, 1 * -1 + 2 * 1) = (5, 1)
+    assertEquals(network.output(new float[]{1, 2}, buffers)[0], 20f, 0);
+
+    // hidden = relu(-1, 1) = (0, 1)
+    assertEquals(network.output(new float[]{-1, 0}, buffers)[0], 5f, 0);
+  }
+
+  @Test
+  public void testExport() throws Exception {
+    MultiLayerNetwork model = TestNeuralEvaluation.createModel();
+    DenseNetwork network = DenseNetworkExporter.toDenseNetwork(model);
+    float[][] buffers = network.createBuffers();
+
+    // The exported weights, biases and activations must give the same
+    // result as the model
+    for (String fen : TestNeuralEvaluation.FENS) {
+      Position position = Notation.toPosition(fen);
+      float[] features = new float[NeuralEvaluation.FEATURES];
+      NeuralEvaluation.getFeatures(position, features);
+      double expected = model.output(
+          TestNeuralEvaluation.getInput(position), false).getDouble(0);
+
+      assertEquals(network.output(features, buffers)[0], expected, 1e-4);
+    }
+  }
+
+  @Test
+  public void testReadWrite() throws Exception {
+    DenseNetwork network = createNetwork();
+
+    File file = File.createTempFile("network", ".bin");
+    try {
+      network.write(file.getPath());
+      DenseNetwork result = DenseNetwork.read(file.getPath());
+
+      assertArrayEquals(result.sizes, network.sizes);
+      assertArrayEquals(result.activations, network.activations);
+      assertArrayEquals(result.weights[0], network.weights[0], 0);
+      assertArrayEquals(result.biases[1], network.biases[1], 0);
+    } finally {
+      file.delete();
+    }
+  }
+}
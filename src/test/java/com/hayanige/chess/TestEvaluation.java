@@ -8,6 +8,7 @@
 package com.hayanige.chess;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -21,4 +22,56 @@ public class TestEvaluation {
     assertEquals(evaluation.evaluate(position), PulseEvaluation.TEMPO);
   }
 
+  @Test
+  public void testPawnStructure() {
+    Evaluation evaluation = new PulseEvaluation();
+
+    // An advanced passed pawn is worth more than a doubled pawn
+    Position position =
+        Notation.toPosition("4k3/8/3P4/8/8/8/5PP1/4K3 w - - 0 1");
+    Position mirrored =
+        Notation.toPosition("4k3/5pp1/8/8/8/3p4/8/4K3 b - - 0 1");
+    assertEquals(evaluation.evaluate(mirrored), evaluation.evaluate(position));
+
+    Position other = Notation.toPosition("4k3/8/8/8/8/5P2/5PP1/4K3 w - - 0 1");
+    assertTrue(evaluation.evaluate(other) < evaluation.evaluate(position));
+
+    // The second call uses the pawn table
+    assertEquals(evaluation.evaluate(position), evaluation.evaluate(mirrored));
+  }
+
+  @Test
+  public void testKingShield() {
+    Evaluation evaluation = new PulseEvaluation();
+
+    // White has a pawn shield, black has pushed its pawns. The shield is
+    // worth nothing in a pawn ending and more with every piece on the board.
+    Position pawnEnding =
+        Notation.toPosition("6k1/8/5ppp/8/8/8/5PPP/6K1 w - - 0 1");
+    Position rookEnding =
+        Notation.toPosition("r5k1/8/5ppp/8/8/8/5PPP/R5K1 w - - 0 1");
+    Position middlegame =
+        Notation.toPosition("rq4k1/8/5ppp/8/8/8/5PPP/RQ4K1 w - - 0 1");
+
+    assertEquals(evaluation.evaluate(pawnEnding), PulseEvaluation.TEMPO);
+    assertTrue(evaluation.evaluate(rookEnding)
+        > evaluation.evaluate(pawnEnding));
+    assertTrue(evaluation.evaluate(middlegame)
+        > evaluation.evaluate(rookEnding));
+  }
+
+  @Test
+  public void testDrawish() {
+    Evaluation evaluation = new PulseEvaluation();
+
+    // Rook against bishop without pawns is drawish, so the value is divided
+    // by 4 before the tempo is added
+    Position position =
+        Notation.toPosition("4k3/8/8/3b4/8/8/8/R3K3 w - - 0 1");
+    assertTrue(MaterialTable.isDrawish(MaterialTable.get(position)));
+    assertEquals(evaluation.evaluate(position), 51);
+
+    position = Notation.toPosition("4k3/8/8/3b4/8/8/8/R3K3 b - - 0 1");
+    assertEquals(evaluation.evaluate(position), -49);
+  }
 }
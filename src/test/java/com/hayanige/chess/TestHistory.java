@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Move.NOMOVE;
+import static com.hayanige.chess.MoveType.NORMAL;
+import static com.hayanige.chess.Piece.BLACK_KNIGHT;
+import static com.hayanige.chess.Piece.NOPIECE;
+import static com.hayanige.chess.Piece.WHITE_KNIGHT;
+import static com.hayanige.chess.Piece.WHITE_PAWN;
+import static com.hayanige.chess.PieceType.NOPIECETYPE;
+import static com.hayanige.chess.Square.b1;
+import static com.hayanige.chess.Square.b8;
+import static com.hayanige.chess.Square.c3;
+import static com.hayanige.chess.Square.c6;
+import static com.hayanige.chess.Square.e2;
+import static com.hayanige.chess.Square.e3;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestHistory {
+
+  private static final int KNIGHT_MOVE = Move.valueOf(NORMAL, b1, c3,
+      WHITE_KNIGHT, NOPIECE, NOPIECETYPE);
+  private static final int PAWN_MOVE = Move.valueOf(NORMAL, e2, e3,
+      WHITE_PAWN, NOPIECE, NOPIECETYPE);
+  private static final int PREVIOUS_MOVE = Move.valueOf(NORMAL, b8, c6,
+      BLACK_KNIGHT, NOPIECE, NOPIECETYPE);
+
+  @Test
+  public void testUpdate() {
+    History history = new History();
+    history.update(KNIGHT_MOVE, PREVIOUS_MOVE, 4, new int[]{PAWN_MOVE}, 1);
+
+    assertEquals(history.get(KNIGHT_MOVE), 16);
+    assertEquals(history.get(PAWN_MOVE), -16);
+    assertEquals(history.getCounterMove(PREVIOUS_MOVE), KNIGHT_MOVE);
+    assertEquals(history.getCounterMove(NOMOVE), NOMOVE);
+
+    history.age();
+    assertEquals(history.get(KNIGHT_MOVE), 8);
+
+    history.clear();
+    assertEquals(history.get(KNIGHT_MOVE), 0);
+    assertEquals(history.getCounterMove(PREVIOUS_MOVE), NOMOVE);
+  }
+
+  @Test
+  public void testBounds() {
+    History history = new History();
+    for (int i = 0; i < 1000; ++i) {
+      history.update(KNIGHT_MOVE, NOMOVE, 100, new int[]{PAWN_MOVE}, 1);
+    }
+
+    assertTrue(history.get(KNIGHT_MOVE) <= History.MAX_VALUE);
+    assertTrue(history.get(PAWN_MOVE) >= -History.MAX_VALUE);
+  }
+}
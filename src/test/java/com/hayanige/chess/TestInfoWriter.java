@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.MoveType.NORMAL;
+import static com.hayanige.chess.MoveType.PAWNPROMOTION;
+import static com.hayanige.chess.Piece.BLACK_ROOK;
+import static com.hayanige.chess.Piece.NOPIECE;
+import static com.hayanige.chess.Piece.WHITE_KNIGHT;
+import static com.hayanige.chess.Piece.WHITE_PAWN;
+import static com.hayanige.chess.PieceType.KNIGHT;
+import static com.hayanige.chess.PieceType.NOPIECETYPE;
+import static com.hayanige.chess.Square.b1;
+import static com.hayanige.chess.Square.c3;
+import static com.hayanige.chess.Square.e7;
+import static com.hayanige.chess.Square.f8;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.Test;
+
+public class TestInfoWriter {
+
+  @Test
+  public void testSend() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    InfoWriter infoWriter = new InfoWriter(new PrintStream(bytes));
+
+    infoWriter.begin()
+        .append("depth", 12)
+        .append("score cp", -35)
+        .append("upperbound")
+        .append("nodes", 0)
+        .append("pv")
+        .appendMove(Move.valueOf(NORMAL, b1, c3, WHITE_KNIGHT, NOPIECE,
+            NOPIECETYPE))
+        .appendMove(Move.valueOf(PAWNPROMOTION, e7, f8, WHITE_PAWN,
+            BLACK_ROOK, KNIGHT));
+    String line = "info depth 12 score cp -35 upperbound nodes 0 pv b1c3 e7f8n";
+    assertEquals(infoWriter.toString(), line);
+
+    infoWriter.send();
+    assertEquals(new String(bytes.toByteArray(), US_ASCII),
+        line + System.lineSeparator());
+
+    // The buffer is reused for the next line
+    infoWriter.begin().append("nps", 1234567890123L);
+    assertEquals(infoWriter.toString(), "info nps 1234567890123");
+  }
+}
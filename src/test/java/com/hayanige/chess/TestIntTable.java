@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestIntTable {
+
+  @Test
+  public void testProbeAndStore() {
+    IntTable table = new IntTable(1);
+    long key = 0x123456789ABCDEF0L;
+
+    assertEquals(table.probe(key), IntTable.NOENTRY);
+
+    // A value of 0 is a valid entry
+    table.store(key, 0);
+    assertEquals(table.probe(key), 0);
+
+    table.store(key, -42);
+    assertEquals(table.probe(key), -42);
+
+    // Another key with the same index does not match
+    assertEquals(table.probe(key ^ (1L << 40)), IntTable.NOENTRY);
+
+    table.clear();
+    assertEquals(table.probe(key), IntTable.NOENTRY);
+  }
+}
@@ -13,12 +13,15 @@ import static com.hayanige.chess.MoveType.ENPASSANT;
 import static com.hayanige.chess.MoveType.NORMAL;
 import static com.hayanige.chess.MoveType.PAWNDOUBLE;
 import static com.hayanige.chess.MoveType.PAWNPROMOTION;
+import static org.junit.Assert.assertEquals;
 
 import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.GenericMove;
 import com.hayanige.chess.MoveList.MoveEntry;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -362,6 +365,37 @@ public class TestMoveGenerator {
     }
   }
 
+  @Test
+  public void testIsPseudoLegal() {
+    // Collect the moves of all positions and check them against every
+    // position, like hash moves from other positions
+    Position[] positions = new Position[perftPositions.length];
+    Set<Integer> allMoves = new HashSet<>();
+    for (int i = 0; i < perftPositions.length; ++i) {
+      positions[i] = Notation.toPosition(perftPositions[i].fen);
+      MoveList<MoveEntry> moves = moveGenerators[0].getMoves(positions[i], 1,
+          positions[i].isCheck());
+      for (int j = 0; j < moves.size; ++j) {
+        allMoves.add(moves.entries[j].move);
+      }
+    }
+
+    for (Position position : positions) {
+      boolean isCheck = position.isCheck();
+      MoveList<MoveEntry> moves = moveGenerators[0].getMoves(position, 1,
+          isCheck);
+      Set<Integer> expectedMoves = new HashSet<>();
+      for (int i = 0; i < moves.size; ++i) {
+        expectedMoves.add(moves.entries[i].move);
+      }
+
+      for (int move : allMoves) {
+        assertEquals(MoveGenerator.isPseudoLegal(position, move, isCheck),
+            expectedMoves.contains(move));
+      }
+    }
+  }
+
   private String findMissingMoves(int depth, Position position, int ply) {
     String message = "";
 
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Move.NOMOVE;
+import static com.hayanige.chess.MoveType.NORMAL;
+import static com.hayanige.chess.Piece.BLACK_BISHOP;
+import static com.hayanige.chess.Piece.NOPIECE;
+import static com.hayanige.chess.Piece.WHITE_BISHOP;
+import static com.hayanige.chess.Piece.WHITE_KNIGHT;
+import static com.hayanige.chess.PieceType.NOPIECETYPE;
+import static com.hayanige.chess.Square.a6;
+import static com.hayanige.chess.Square.b5;
+import static com.hayanige.chess.Square.c3;
+import static com.hayanige.chess.Square.d5;
+import static com.hayanige.chess.Square.e2;
+import static com.hayanige.chess.Square.e5;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.hayanige.chess.MoveList.MoveEntry;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public class TestMovePicker {
+
+  private static final String FEN =
+      "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+  private static Set<Integer> getMoves(Position position, int depth) {
+    MoveList<MoveEntry> moves = new MoveGenerator().getMoves(position, depth,
+        position.isCheck());
+    Set<Integer> result = new HashSet<>();
+    for (int i = 0; i < moves.size; ++i) {
+      result.add(moves.entries[i].move);
+    }
+
+    return result;
+  }
+
+  @Test
+  public void testStages() {
+    Position position = Notation.toPosition(FEN);
+    int hashMove = Move.valueOf(NORMAL, e2, a6, WHITE_BISHOP, BLACK_BISHOP,
+        NOPIECETYPE);
+    int killer = Move.valueOf(NORMAL, c3, b5, WHITE_KNIGHT, NOPIECE,
+        NOPIECETYPE);
+    // This killer is not possible in the position
+    int invalidKiller = Move.valueOf(NORMAL, e5, d5, WHITE_KNIGHT, NOPIECE,
+        NOPIECETYPE);
+
+    MovePicker movePicker = new MovePicker(new History());
+    movePicker.init(position, 1, false, hashMove, killer, invalidKiller,
+        NOMOVE);
+
+    assertEquals(movePicker.next(), hashMove);
+
+    // Good captures come before the killer and the quiet moves, bad
+    // captures come last
+    Set<Integer> moves = new HashSet<>();
+    boolean quiet = false;
+    boolean bad = false;
+    for (int move = movePicker.next(); move != NOMOVE;
+        move = movePicker.next()) {
+      if (!MovePicker.isCapture(move)) {
+        if (!quiet) {
+          assertEquals(move, killer);
+        }
+        assertTrue(!bad);
+        quiet = true;
+      } else if (quiet) {
+        assertTrue(position.see(move) < 0);
+        bad = true;
+      } else {
+        assertTrue(position.see(move) >= 0);
+      }
+      assertTrue(moves.add(move));
+    }
+    assertTrue(bad);
+    moves.add(hashMove);
+
+    assertEquals(moves, getMoves(position, 1));
+  }
+
+  @Test
+  public void testQuiescent() {
+    Position position = Notation.toPosition(FEN);
+    // A quiet hash move is not returned in quiescent search
+    int hashMove = Move.valueOf(NORMAL, c3, b5, WHITE_KNIGHT, NOPIECE,
+        NOPIECETYPE);
+
+    MovePicker movePicker = new MovePicker(new History());
+    movePicker.init(position, 0, false, hashMove, NOMOVE, NOMOVE, NOMOVE);
+
+    Set<Integer> moves = new HashSet<>();
+    for (int move = movePicker.next(); move != NOMOVE;
+        move = movePicker.next()) {
+      assertTrue(MovePicker.isCapture(move));
+      assertTrue(moves.add(move));
+    }
+
+    // Bad captures are pruned
+    Set<Integer> goodCaptures = getMoves(position, 0);
+    goodCaptures.removeIf(move -> position.see(move) < 0);
+    assertTrue(goodCaptures.size() < getMoves(position, 0).size());
+    assertEquals(moves, goodCaptures);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static org.junit.Assert.assertEquals;
+
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.Test;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+
+public class TestNeuralEvaluation {
+
+  static final String[] FENS = {
+      Notation.STANDARDPOSITION,
+      "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+      "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 0 1"
+  };
+
+  /**
+   * Returns a small 65-8-1 model with random weights and non-zero biases.
+   */
+  static MultiLayerNetwork createModel() {
+    MultiLayerConfiguration configuration =
+        new NeuralNetConfiguration.Builder()
+            .seed(42)
+            .weightInit(WeightInit.XAVIER)
+            .list()
+            .layer(0, new DenseLayer.Builder()
+                .nIn(NeuralEvaluation.FEATURES).nOut(8)
+                .activation(Activation.RELU).build())
+            .layer(1, new OutputLayer.Builder(LossFunction.MSE)
+                .nIn(8).nOut(1)
+                .activation(Activation.IDENTITY).build())
+            .build();
+    MultiLayerNetwork model = new MultiLayerNetwork(configuration);
+    model.init();
+
+    // Biases are initialized with 0, so give every unit its own value to
+    // check their layout as well
+    for (int i = 0; i < model.getnLayers(); ++i) {
+      INDArray bias = model.getLayer(i).getParam("b");
+      for (int j = 0; j < bias.columns(); ++j) {
+        bias.putScalar(j, 0.1 * (j + 1) - 0.3);
+      }
+    }
+
+    return model;
+  }
+
+  /**
+   * Returns the features of the position as a row vector.
+   */
+  static INDArray getInput(Position position) {
+    float[] features = new float[NeuralEvaluation.FEATURES];
+    NeuralEvaluation.getFeatures(position, features);
+
+    INDArray input = Nd4j.create(1, NeuralEvaluation.FEATURES);
+    for (int i = 0; i < features.length; ++i) {
+      input.putScalar(i, features[i]);
+    }
+
+    return input;
+  }
+
+  @Test
+  public void testOutput() {
+    MultiLayerNetwork model = createModel();
+    NeuralEvaluation evaluation = new NeuralEvaluation(model);
+
+    // Our forward pass must give the same result as the model
+    for (String fen : FENS) {
+      INDArray input = getInput(Notation.toPosition(fen));
+      double expected = model.output(input, false).getDouble(0);
+
+      assertEquals(
+          evaluation.output(input, evaluation.createOutputs(1)).getDouble(0),
+          expected, 1e-4);
+    }
+  }
+}
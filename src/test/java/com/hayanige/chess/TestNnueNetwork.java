@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.hayanige.chess.MoveList.MoveEntry;
+import java.io.File;
+import java.util.Random;
+import org.junit.Test;
+
+public class TestNnueNetwork {
+
+  private static final int HIDDEN = 8;
+  private static final int HEAD = 4;
+
+  private static NnueNetwork createNetwork() {
+    Random random = new Random(42);
+
+    short[] featureWeights = new short[NnueNetwork.FEATURES * HIDDEN];
+    for (int i = 0; i < featureWeights.length; ++i) {
+      featureWeights[i] = (short) (random.nextInt(65) - 32);
+    }
+    short[] featureBiases = new short[HIDDEN];
+    for (int i = 0; i < featureBiases.length; ++i) {
+      featureBiases[i] = (short) random.nextInt(128);
+    }
+    short[] headWeights = new short[2 * HIDDEN * HEAD];
+    for (int i = 0; i < headWeights.length; ++i) {
+      headWeights[i] = (short) (random.nextInt(65) - 32);
+    }
+    short[] outputWeights = new short[HEAD];
+    for (int i = 0; i < outputWeights.length; ++i) {
+      outputWeights[i] = (short) (random.nextInt(129) - 64);
+    }
+
+    return new NnueNetwork(HIDDEN, HEAD, 400, featureWeights, featureBiases,
+        headWeights, new int[HEAD], outputWeights, 0);
+  }
+
+  private static void assertAccumulator(NnueNetwork network,
+      Position position) {
+    short[] expected = new short[2 * HIDDEN];
+    network.refresh(position, expected);
+
+    assertArrayEquals(position.accumulator.get(), expected);
+  }
+
+  @Test
+  public void testIncrementalUpdate() {
+    NnueNetwork network = createNetwork();
+    NnueEvaluation evaluation = new NnueEvaluation(network);
+
+    // Contains castling, en passant and promotions
+    Position position = Notation.toPosition(
+        "r3k2r/pPppqpb1/bn2pnp1/3PN3/Pp2P3/2N2Q1p/1PPBBPPP/R3K2R b KQkq a3 0 1");
+    evaluation.evaluate(position);
+
+    MoveGenerator moveGenerator = new MoveGenerator();
+    MoveList<MoveEntry> moves = moveGenerator.getMoves(position, 2, false);
+    for (int i = 0; i < moves.size; ++i) {
+      int move = moves.entries[i].move;
+
+      position.makeMove(move);
+      assertAccumulator(network, position);
+
+      MoveList<MoveEntry> replies = new MoveGenerator()
+          .getMoves(position, 1, false);
+      for (int j = 0; j < replies.size; ++j) {
+        position.makeMove(replies.entries[j].move);
+        assertAccumulator(network, position);
+        position.undoMove(replies.entries[j].move);
+      }
+
+      position.undoMove(move);
+      assertAccumulator(network, position);
+    }
+  }
+
+  @Test
+  public void testAccumulatorStaysAttached() {
+    NnueNetwork network = createNetwork();
+    NnueEvaluation evaluation = new NnueEvaluation(network);
+
+    // Like the search we only evaluate below the root. The accumulator
+    // prepared at the root must survive all siblings.
+    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
+    evaluation.prepare(position);
+    NnueAccumulator accumulator = position.accumulator;
+
+    MoveGenerator moveGenerator = new MoveGenerator();
+    MoveList<MoveEntry> moves = moveGenerator.getMoves(position, 1, false);
+    for (int i = 0; i < moves.size; ++i) {
+      int move = moves.entries[i].move;
+      position.makeMove(move);
+
+      MoveList<MoveEntry> replies = new MoveGenerator()
+          .getMoves(position, 1, false);
+      for (int j = 0; j < replies.size; ++j) {
+        position.makeMove(replies.entries[j].move);
+        evaluation.evaluate(position);
+        assertSame(position.accumulator, accumulator);
+        assertAccumulator(network, position);
+        position.undoMove(replies.entries[j].move);
+      }
+
+      position.undoMove(move);
+      assertSame(position.accumulator, accumulator);
+      assertAccumulator(network, position);
+    }
+
+    // An accumulator attached below the root is kept when we unwind
+    position = Notation.toPosition(Notation.STANDARDPOSITION);
+    int move = moves.entries[0].move;
+    position.makeMove(move);
+    evaluation.evaluate(position);
+    accumulator = position.accumulator;
+    position.undoMove(move);
+    assertSame(position.accumulator, accumulator);
+    assertAccumulator(network, position);
+  }
+
+  @Test
+  public void testSymmetry() {
+    NnueEvaluation evaluation = new NnueEvaluation(createNetwork());
+
+    // Both colors see the same position from their side
+    Position white = Notation.toPosition(
+        "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+    Position black = Notation.toPosition(
+        "rnbqkb1r/pppp1ppp/5n2/4p3/4P3/2N5/PPPP1PPP/R1BQKBNR b KQkq - 2 3");
+
+    assertEquals(evaluation.evaluate(white), evaluation.evaluate(black));
+  }
+
+  @Test
+  public void testReadWrite() throws Exception {
+    NnueNetwork network = createNetwork();
+    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
+
+    File file = File.createTempFile("network", ".nnue");
+    try {
+      network.write(file.getPath());
+      NnueNetwork result = NnueNetwork.read(file.getPath());
+
+      short[] expected = new short[2 * HIDDEN];
+      network.refresh(position, expected);
+      short[] actual = new short[2 * HIDDEN];
+      result.refresh(position, actual);
+
+      assertArrayEquals(actual, expected);
+      assertEquals(result.evaluate(actual, position.activeColor),
+          network.evaluate(expected, position.activeColor));
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -125,4 +125,12 @@ public class TestNotation {
     // Test full move number
     assertEquals(position.getFullmoveNumber(), 1);
   }
+
+  @Test
+  public void testPieceType() {
+    for (int pieceType : PieceType.values) {
+      assertEquals(Notation.toPieceType(Notation.fromPieceType(pieceType)),
+          pieceType);
+    }
+  }
 }
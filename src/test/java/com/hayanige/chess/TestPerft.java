@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import org.junit.Test;
+
+public class TestPerft {
+
+  private static final String KIWIPETE =
+      "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+  @Test
+  public void testCount() {
+    Perft perft = new Perft(2);
+
+    assertEquals(perft.count(
+        Notation.toPosition(Notation.STANDARDPOSITION), 3), 8902L);
+    assertEquals(perft.count(Notation.toPosition(KIWIPETE), 3), 97862L);
+  }
+
+  @Test
+  public void testSplit() {
+    // Split every subtree, so the tasks are nested
+    Perft perft = new Perft(2, 1);
+
+    assertEquals(perft.count(
+        Notation.toPosition(Notation.STANDARDPOSITION), 4), 197281L);
+    assertEquals(perft.run(Notation.toPosition(KIWIPETE), 3), 97862L);
+  }
+
+  @Test
+  public void testBulkCountingAndHash() {
+    Perft perft = new Perft(2);
+    perft.setBulkCounting(true);
+    perft.setHashSize(1);
+
+    assertEquals(perft.count(Notation.toPosition(KIWIPETE), 4), 4085603L);
+
+    // Pins, en passant and checks
+    assertEquals(perft.count(
+        Notation.toPosition("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"), 5),
+        674624L);
+    assertEquals(perft.count(Notation.toPosition(
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"), 4),
+        422333L);
+  }
+
+  @Test
+  public void testSuite() throws Exception {
+    List<PerftSuite.Entry> entries = PerftSuite.read(new ByteArrayInputStream((
+        "# Comments are ignored\n"
+            + KIWIPETE + " ;D1 48 ;D2 2039 ;D3 97862\n"
+            + Notation.STANDARDPOSITION + " ;D1 20 ;D2 400\n").getBytes(UTF_8)));
+
+    assertEquals(entries.size(), 2);
+    assertEquals(entries.get(0).nodes[3], 97862L);
+
+    PerftSuite suite = new PerftSuite(new Perft(2), 2);
+    assertTrue(suite.run(entries, 3));
+
+    entries.get(1).nodes[2] = 401;
+    assertFalse(suite.run(entries, 3));
+  }
+}
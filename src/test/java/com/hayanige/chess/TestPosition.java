@@ -25,7 +25,11 @@ import static com.hayanige.chess.Piece.WHITE_KNIGHT;
 import static com.hayanige.chess.Piece.WHITE_PAWN;
 import static com.hayanige.chess.Piece.WHITE_QUEEN;
 import static com.hayanige.chess.PieceType.NOPIECETYPE;
+import static com.hayanige.chess.PieceType.KNIGHT;
+import static com.hayanige.chess.PieceType.PAWN_VALUE;
 import static com.hayanige.chess.PieceType.QUEEN;
+import static com.hayanige.chess.PieceType.QUEEN_VALUE;
+import static com.hayanige.chess.PieceType.ROOK_VALUE;
 import static com.hayanige.chess.Square.NOSQUARE;
 import static com.hayanige.chess.Square.a2;
 import static com.hayanige.chess.Square.a3;
@@ -41,8 +45,12 @@ import static com.hayanige.chess.Square.c3;
 import static com.hayanige.chess.Square.c6;
 import static com.hayanige.chess.Square.d3;
 import static com.hayanige.chess.Square.d4;
+import static com.hayanige.chess.Square.d5;
 import static com.hayanige.chess.Square.e1;
+import static com.hayanige.chess.Square.e2;
 import static com.hayanige.chess.Square.e4;
+import static com.hayanige.chess.Square.e5;
+import static com.hayanige.chess.Square.e6;
 import static com.hayanige.chess.Square.f3;
 import static com.hayanige.chess.Square.g1;
 import static org.junit.Assert.assertEquals;
@@ -137,6 +145,33 @@ public class TestPosition {
 
     position = Notation.toPosition("8/4k3/8/2B3n1/8/8/2K5/8 b - - 0 1");
     assertEquals(position.hasInsufficientMaterial(), true);
+
+    position = Notation.toPosition("8/4k3/8/2N3N1/8/8/2K5/8 b - - 0 1");
+    assertEquals(position.hasInsufficientMaterial(), false);
+
+    position = Notation.toPosition("8/4k3/8/2B5/8/8/2KP4/8 b - - 0 1");
+    assertEquals(position.hasInsufficientMaterial(), false);
+  }
+
+  @Test
+  public void testMaterialKey() {
+    Position position = Notation.toPosition("8/P5k1/8/8/2K5/8/8/3Q4 w - - 0 1");
+    int materialKey = position.materialKey;
+
+    // The second queen is not covered by the material table
+    int move = Move.valueOf(PAWNPROMOTION, a7, a8, WHITE_PAWN, NOPIECE, QUEEN);
+    position.makeMove(move);
+    assertEquals(position.materialOverflow, 1);
+    assertEquals(position.hasInsufficientMaterial(), false);
+
+    position.undoMove(move);
+    assertEquals(position.materialOverflow, 0);
+    assertEquals(position.materialKey, materialKey);
+
+    move = Move.valueOf(PAWNPROMOTION, a7, a8, WHITE_PAWN, NOPIECE, KNIGHT);
+    position.makeMove(move);
+    assertEquals(position.materialKey, Notation.toPosition(
+        "N7/6k1/8/8/2K5/8/8/3Q4 b - - 0 1").materialKey);
   }
 
   @Test
@@ -238,5 +273,88 @@ public class TestPosition {
     assertEquals(Notation.fromPosition(position),
         "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
     assertEquals(position.zobristKey, zobristKey);
+
+    // Losing castling rights must change the zobrist key
+    position.makeMove(Move.valueOf(CASTLING, e1, g1, WHITE_KING, NOPIECE,
+        NOPIECETYPE));
+    assertEquals(position.zobristKey,
+        Notation.toPosition("r3k2r/8/8/8/8/8/8/R4RK1 b kq - 1 1").zobristKey);
+  }
+
+  @Test
+  public void testPawnZobristKey() {
+    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
+    long pawnZobristKey = position.pawnZobristKey;
+
+    // Knight moves don't change the pawn structure
+    int move = Move.valueOf(NORMAL, g1, f3, WHITE_KNIGHT, NOPIECE,
+        NOPIECETYPE);
+    position.makeMove(move);
+    assertEquals(position.pawnZobristKey, pawnZobristKey);
+    position.undoMove(move);
+
+    move = Move.valueOf(PAWNDOUBLE, e2, e4, WHITE_PAWN, NOPIECE, NOPIECETYPE);
+    position.makeMove(move);
+    assertEquals(position.pawnZobristKey, Notation.toPosition(
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1")
+        .pawnZobristKey);
+
+    position.undoMove(move);
+    assertEquals(position.pawnZobristKey, pawnZobristKey);
+  }
+
+  @Test
+  public void testNullMove() {
+    Position position = Notation.toPosition(
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+    long zobristKey = position.zobristKey;
+
+    // Passing clears the en passant square
+    position.makeNullMove();
+    assertEquals(position.activeColor, WHITE);
+    assertEquals(position.enPassantSquare, NOSQUARE);
+    assertEquals(position.zobristKey, Notation.toPosition(
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2")
+        .zobristKey);
+
+    position.undoNullMove();
+    assertEquals(Notation.fromPosition(position),
+        "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+    assertEquals(position.zobristKey, zobristKey);
+  }
+
+  private static int see(String fen, int type, int originSquare,
+      int targetSquare, int promotion) {
+    Position position = Notation.toPosition(fen);
+    return position.see(Move.valueOf(type, originSquare, targetSquare,
+        position.board[originSquare], position.board[targetSquare],
+        promotion));
+  }
+
+  @Test
+  public void testSee() {
+    // The pawn is defended by a pawn
+    assertEquals(see("4k3/8/3p4/4p3/8/8/8/4R1K1 w - - 0 1",
+        NORMAL, e1, e5, NOPIECETYPE), PAWN_VALUE - ROOK_VALUE);
+
+    // The second rook joins the exchange, so black should not recapture
+    assertEquals(see("4r1k1/8/8/4p3/8/8/4R3/4R1K1 w - - 0 1",
+        NORMAL, e2, e5, NOPIECETYPE), PAWN_VALUE);
+
+    // The queen behind the rook wins the exchange for black
+    assertEquals(see("4q1k1/4r3/8/4p3/8/8/4R3/4R1K1 w - - 0 1",
+        NORMAL, e2, e5, NOPIECETYPE), PAWN_VALUE - ROOK_VALUE);
+
+    // En passant opens the file for the rook
+    Position position = Notation.toPosition(
+        "4r1k1/8/8/3Pp3/8/8/8/4R1K1 w - e6 0 1");
+    assertEquals(position.see(Move.valueOf(ENPASSANT, d5, e6, WHITE_PAWN,
+        BLACK_PAWN, NOPIECETYPE)), PAWN_VALUE);
+
+    // The new queen is captured immediately
+    assertEquals(see("1r4k1/P7/8/8/8/8/8/6K1 w - - 0 1",
+        PAWNPROMOTION, a7, a8, QUEEN), -PAWN_VALUE);
+    assertEquals(see("1r4k1/P7/8/8/8/8/8/6K1 w - - 0 1",
+        PAWNPROMOTION, a7, b8, QUEEN), ROOK_VALUE + QUEEN_VALUE - PAWN_VALUE);
   }
 }
@@ -12,8 +12,11 @@ import static com.hayanige.chess.Square.a6;
 import static com.hayanige.chess.Square.a7;
 import static com.hayanige.chess.Square.a8;
 import static com.hayanige.chess.Square.b6;
+import static com.hayanige.chess.Square.f7;
 import static com.hayanige.chess.Square.h7;
 import static com.hayanige.chess.Square.h8;
+import static com.hayanige.chess.TranspositionTable.LOWER;
+import static com.hayanige.chess.TranspositionTable.UPPER;
 import static com.hayanige.chess.Value.CHECKMATE;
 import static com.hayanige.chess.Value.CHECKMATE_THRESHOLD;
 import static com.hayanige.chess.Value.NOVALUE;
@@ -22,6 +25,7 @@ import static java.lang.Math.abs;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.Assert.assertEquals;
 
+import com.hayanige.chess.MoveList.MoveEntry;
 import com.hayanige.chess.MoveList.RootEntry;
 import java.util.concurrent.Semaphore;
 import org.junit.Test;
@@ -58,8 +62,8 @@ public class TestSearch {
           }
 
           @Override
-          public void sendMove(RootEntry entry, int currentDepth,
-              int currentMaxDepth, long totalNodes) {
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
           }
         }, evaluation);
     search.newDepthSearch(Notation.toPosition("3K3r/8/3k4/8/8/8/8/8 w - - 0 1"),
@@ -103,8 +107,8 @@ public class TestSearch {
           }
 
           @Override
-          public void sendMove(RootEntry entry, int currentDepth,
-              int currentMaxDepth, long totalNodes) {
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
             if (abs(entry.value) >= CHECKMATE_THRESHOLD) {
               // Calculate mate distance
               int mateDepth = CHECKMATE - abs(entry.value);
@@ -124,6 +128,184 @@ public class TestSearch {
     assertEquals(mate[0], 1);
   }
 
+  /**
+   * Searches the position to the depth and returns the best move and the
+   * reported mate distance in moves.
+   *
+   * @param disabledOptions the SELECTIVE_OPTIONS of the search to disable.
+   */
+  private static int[] searchMate(String fen, int depth,
+      String... disabledOptions) throws InterruptedException {
+    final int[] result = {NOMOVE, 0};
+
+    final Semaphore semaphore = new Semaphore(0);
+    final Evaluation evaluation = new PulseEvaluation();
+
+    Search search = new Search(
+        new Protocol() {
+          @Override
+          public void sendBestMove(int bestMove, int ponderMove) {
+            result[0] = bestMove;
+
+            semaphore.release();
+          }
+
+          @Override
+          public void sendStatus(int currentDepth, int currentMaxDepth,
+              long totalNodes, int currentMove, int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendStatus(boolean force, int currentDepth,
+              int currentMaxDepth, long totalNodes, int currentMove,
+              int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
+            if (abs(entry.value) >= CHECKMATE_THRESHOLD) {
+              int mateDepth = CHECKMATE - abs(entry.value);
+              result[1] = signum(entry.value) * (mateDepth + 1) / 2;
+            } else {
+              result[1] = 0;
+            }
+          }
+        }, evaluation);
+    for (String option : disabledOptions) {
+      search.setSelectiveOption(option, false);
+    }
+    search.newDepthSearch(Notation.toPosition(fen), depth);
+    search.start();
+
+    assertEquals(semaphore.tryAcquire(10000, MILLISECONDS), true);
+    search.quit();
+
+    return result;
+  }
+
+  @Test
+  public void testCheckExtension() throws InterruptedException {
+    // Smothered mate in 3 where every white move gives check, e.g. 1. Nh6+
+    // Kh8 2. Qg8+ Rxg8 3. Nf7#. It takes 5 plies, but the checks below the
+    // root are extended, so a depth of 4 is enough. Razoring drops into
+    // quiescent search before the quiet mate, so we disable it here.
+    int[] result = searchMate("5rk1/5Npp/8/8/2Q5/8/8/6K1 w - - 0 1", 4,
+        Search.RAZORING);
+
+    assertEquals(Move.getOriginSquare(result[0]), f7);
+    assertEquals(result[1], 3);
+  }
+
+  @Test
+  public void testShortestMate() throws InterruptedException {
+    // A deeper search finds longer mates as well, but must report the
+    // shortest one
+    int[] result = searchMate("5rk1/5Npp/8/8/2Q5/8/8/6K1 w - - 0 1", 9);
+    assertEquals(result[1], 3);
+
+    result = searchMate("8/8/1R1P4/2B2p2/k1K2P2/4P3/8/8 w - - 3 101", 7);
+    assertEquals(Move.getOriginSquare(result[0]), b6);
+    assertEquals(Move.getTargetSquare(result[0]), a6);
+    assertEquals(result[1], 1);
+  }
+
+  @Test
+  public void testSelectiveOptions() throws InterruptedException {
+    // Pruning must not hide mates or stalemates
+    for (String option : Search.SELECTIVE_OPTIONS) {
+      int[] result = searchMate(
+          "8/8/1R1P4/2B2p2/k1K2P2/4P3/8/8 w - - 3 101", 4, option);
+      assertEquals(option, Move.getOriginSquare(result[0]), b6);
+      assertEquals(option, Move.getTargetSquare(result[0]), a6);
+      assertEquals(option, result[1], 1);
+
+      result = searchMate("5rk1/5Npp/8/8/2Q5/8/8/6K1 w - - 0 1", 6, option);
+      assertEquals(option, result[1], 3);
+
+      result = searchMate("3K3r/8/3k4/8/8/8/8/8 w - - 0 1", 2, option);
+      assertEquals(option, result[0], NOMOVE);
+
+      result = searchMate("7k/5K2/6Q1/8/8/8/8/8 b - - 1 1", 2, option);
+      assertEquals(option, result[0], NOMOVE);
+    }
+  }
+
+  /**
+   * Searches the position to the depth and returns the best move, its value
+   * and whether a LOWER or UPPER bound was reported.
+   */
+  private static int[] searchWindow(String fen, int depth,
+      boolean aspirationWindows) throws InterruptedException {
+    final int[] result = {NOMOVE, NOVALUE, 0, 0};
+
+    final Semaphore semaphore = new Semaphore(0);
+    final Evaluation evaluation = new PulseEvaluation();
+
+    Search search = new Search(
+        new Protocol() {
+          @Override
+          public void sendBestMove(int bestMove, int ponderMove) {
+            result[0] = bestMove;
+
+            semaphore.release();
+          }
+
+          @Override
+          public void sendStatus(int currentDepth, int currentMaxDepth,
+              long totalNodes, int currentMove, int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendStatus(boolean force, int currentDepth,
+              int currentMaxDepth, long totalNodes, int currentMove,
+              int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
+            result[1] = entry.value;
+            if (entry.bound == LOWER) {
+              result[2] = 1;
+            } else if (entry.bound == UPPER) {
+              result[3] = 1;
+            }
+          }
+        }, evaluation);
+    search.setAspirationWindows(aspirationWindows);
+    search.newDepthSearch(Notation.toPosition(fen), depth);
+    search.start();
+
+    assertEquals(semaphore.tryAcquire(10000, MILLISECONDS), true);
+    search.quit();
+
+    return result;
+  }
+
+  @Test
+  public void testAspirationWindows() throws InterruptedException {
+    // The knight fork wins a rook, so an iteration fails high
+    String fen = "2r3k1/pp3ppp/8/3N4/8/8/PPP2PPP/2KR4 w - - 0 1";
+    int[] result = searchWindow(fen, 6, true);
+    int[] fullWindow = searchWindow(fen, 6, false);
+
+    assertEquals(result[0], fullWindow[0]);
+    assertEquals(result[1], fullWindow[1]);
+    assertEquals(result[2], 1);
+    assertEquals(fullWindow[2], 0);
+
+    // Here the value drops in the last iteration, so it fails low
+    fen = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    result = searchWindow(fen, 6, true);
+    fullWindow = searchWindow(fen, 6, false);
+
+    assertEquals(result[0], fullWindow[0]);
+    assertEquals(result[1], fullWindow[1]);
+    assertEquals(result[3], 1);
+    assertEquals(fullWindow[3], 0);
+  }
+
   @Test
   public void testStalemate() throws InterruptedException {
     final int[] currentBestMove = {NOMOVE};
@@ -154,8 +336,8 @@ public class TestSearch {
           }
 
           @Override
-          public void sendMove(RootEntry entry, int currentDepth,
-              int currentMaxDepth, long totalNodes) {
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
           }
         }, evaluation);
     search.newDepthSearch(Notation.toPosition("7k/5K2/6Q1/8/8/8/8/8 b - - 1 1"),
@@ -196,8 +378,8 @@ public class TestSearch {
           }
 
           @Override
-          public void sendMove(RootEntry entry, int currentDepth,
-              int currentMaxDepth, long totalNodes) {
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
           }
         }, evaluation);
     search.newClockSearch(Notation.toPosition("3K4/7r/3k4/8/8/8/8/8 b - - 0 1"),
@@ -238,8 +420,8 @@ public class TestSearch {
           }
 
           @Override
-          public void sendMove(RootEntry entry, int currentDepth,
-              int currentMaxDepth, long totalNodes) {
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
           }
         }, evaluation);
     search.newClockSearch(Notation.toPosition("K1k5/8/8/8/8/8/8/8 w - - 0 1"),
@@ -252,4 +434,178 @@ public class TestSearch {
     assertEquals(Move.getTargetSquare(currentBestMove[0]), a7);
   }
 
+  @Test
+  public void testTimeStopCondition() throws InterruptedException {
+    final Semaphore semaphore = new Semaphore(0);
+    final Evaluation evaluation = new PulseEvaluation();
+
+    Search search = new Search(
+        new Protocol() {
+          @Override
+          public void sendBestMove(int bestMove, int ponderMove) {
+            semaphore.release();
+          }
+
+          @Override
+          public void sendStatus(int currentDepth, int currentMaxDepth,
+              long totalNodes, int currentMove, int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendStatus(boolean force, int currentDepth,
+              int currentMaxDepth, long totalNodes, int currentMove,
+              int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
+          }
+        }, evaluation);
+    search.newTimeSearch(Notation.toPosition(Notation.STANDARDPOSITION), 100);
+
+    long startTime = System.nanoTime();
+    search.start();
+
+    // The search checks the clock in its loop and stops at the deadline,
+    // not at a depth limit
+    assertEquals(semaphore.tryAcquire(10000, MILLISECONDS), true);
+    long time = (System.nanoTime() - startTime) / 1_000_000;
+    assertEquals(time >= 100, true);
+    assertEquals(search.isTimerStopped(), true);
+
+    search.quit();
+  }
+
+  @Test
+  public void testMultiPv() throws InterruptedException {
+    final int depth = 4;
+    final int[] moves = new int[3];
+    final int[] values = new int[3];
+
+    final Semaphore semaphore = new Semaphore(0);
+    final Evaluation evaluation = new PulseEvaluation();
+
+    Search search = new Search(
+        new Protocol() {
+          @Override
+          public void sendBestMove(int bestMove, int ponderMove) {
+            semaphore.release();
+          }
+
+          @Override
+          public void sendStatus(int currentDepth, int currentMaxDepth,
+              long totalNodes, int currentMove, int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendStatus(boolean force, int currentDepth,
+              int currentMaxDepth, long totalNodes, int currentMove,
+              int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long totalNodes) {
+            if (currentDepth == depth) {
+              moves[pvNumber - 1] = entry.move;
+              values[pvNumber - 1] = entry.value;
+            }
+          }
+        }, evaluation);
+    search.setMultiPv(3);
+    search.newDepthSearch(Notation.toPosition(Notation.STANDARDPOSITION),
+        depth);
+    search.start();
+
+    assertEquals(semaphore.tryAcquire(10000, MILLISECONDS), true);
+
+    // We get three different moves ordered by their values
+    assertEquals(moves[0] != moves[1] && moves[1] != moves[2]
+        && moves[0] != moves[2], true);
+    assertEquals(values[0] >= values[1] && values[1] >= values[2], true);
+
+    search.quit();
+  }
+
+  @Test
+  public void testThreads() throws InterruptedException {
+    final int[] bestMove = {NOMOVE};
+    final long[] totalNodes = {0};
+
+    final Semaphore semaphore = new Semaphore(0);
+    final Evaluation evaluation = new PulseEvaluation();
+
+    Search search = new Search(
+        new Protocol() {
+          @Override
+          public void sendBestMove(int move, int ponderMove) {
+            bestMove[0] = move;
+            semaphore.release();
+          }
+
+          @Override
+          public void sendStatus(int currentDepth, int currentMaxDepth,
+              long nodes, int currentMove, int currentMoveNumber) {
+          }
+
+          @Override
+          public void sendStatus(boolean force, int currentDepth,
+              int currentMaxDepth, long nodes, int currentMove,
+              int currentMoveNumber) {
+            if (force) {
+              totalNodes[0] = nodes;
+            }
+          }
+
+          @Override
+          public void sendMove(RootEntry entry, int pvNumber,
+              int currentDepth, int currentMaxDepth, long nodes) {
+          }
+        }, evaluation);
+    search.setThreads(4);
+    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
+    MoveList<MoveEntry> legalMoves = new MoveGenerator().getLegalMoves(
+        position, 1, position.isCheck());
+
+    // The best move of a depth search is legal
+    for (int i = 0; i < 2; ++i) {
+      search.newDepthSearch(position, 6);
+      search.start();
+      assertEquals(semaphore.tryAcquire(10000, MILLISECONDS), true);
+      assertEquals(contains(legalMoves, bestMove[0]), true);
+      assertEquals(search.isHelperSearching(), false);
+    }
+
+    // Stopping an infinite search waits for all helpers
+    search.newInfiniteSearch(position);
+    search.start();
+    Thread.sleep(100);
+    search.stop();
+    assertEquals(semaphore.tryAcquire(), true);
+    assertEquals(search.isHelperSearching(), false);
+    assertEquals(contains(legalMoves, bestMove[0]), true);
+
+    // All workers together stop near the node limit. Every worker may count
+    // some nodes after the last check of the limit.
+    final long searchNodes = 100_000;
+    search.newNodesSearch(position, searchNodes);
+    search.start();
+    assertEquals(semaphore.tryAcquire(10000, MILLISECONDS), true);
+    assertEquals(totalNodes[0] >= searchNodes, true);
+    assertEquals(totalNodes[0] <= searchNodes + 4 * 2048, true);
+    assertEquals(search.isHelperSearching(), false);
+
+    search.quit();
+  }
+
+  private static boolean contains(MoveList<MoveEntry> moves, int move) {
+    for (int i = 0; i < moves.size; ++i) {
+      if (moves.entries[i].move == move) {
+        return true;
+      }
+    }
+
+    return false;
+  }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.MoveType.NORMAL;
+import static com.hayanige.chess.Piece.NOPIECE;
+import static com.hayanige.chess.Piece.WHITE_KNIGHT;
+import static com.hayanige.chess.PieceType.NOPIECETYPE;
+import static com.hayanige.chess.Square.b1;
+import static com.hayanige.chess.Square.c3;
+import static com.hayanige.chess.Square.g1;
+import static com.hayanige.chess.Square.f3;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestTimeManager {
+
+  private static final int MOVE1 = Move.valueOf(NORMAL, b1, c3, WHITE_KNIGHT,
+      NOPIECE, NOPIECETYPE);
+  private static final int MOVE2 = Move.valueOf(NORMAL, g1, f3, WHITE_KNIGHT,
+      NOPIECE, NOPIECETYPE);
+
+  @Test
+  public void testLimits() {
+    TimeManager timeManager = new TimeManager();
+
+    // We keep one second and split the rest over 40 moves
+    timeManager.init(41000, 0, 0);
+    assertEquals(timeManager.getSoftTime(), 1000);
+    assertEquals(timeManager.getMaximumTime(), 4000);
+
+    // On the last move before the time control we may use all of it
+    timeManager.init(10000, 0, 1);
+    assertEquals(timeManager.getSoftTime(), 9500);
+    assertEquals(timeManager.getMaximumTime(), 9500);
+
+    // Always search at least a millisecond
+    timeManager.init(1, 0, 40);
+    assertEquals(timeManager.getMaximumTime(), 1);
+  }
+
+  @Test
+  public void testUpdate() {
+    TimeManager timeManager = new TimeManager();
+    timeManager.init(41000, 0, 0);
+
+    // A stable best move which gets most of the nodes needs less time
+    for (int i = 0; i < 6; ++i) {
+      timeManager.update(MOVE1, 50, 900, 1000);
+    }
+    long stableTime = timeManager.getSoftTime();
+    assertTrue(stableTime < 1000);
+
+    // A new best move with a lower value needs more time
+    timeManager.update(MOVE2, -50, 300, 1000);
+    assertTrue(timeManager.getSoftTime() > 1000);
+    assertTrue(timeManager.getSoftTime() <= timeManager.getMaximumTime());
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 hayanige
+ *
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.hayanige.chess;
+
+import static com.hayanige.chess.Move.NOMOVE;
+import static com.hayanige.chess.MoveType.NORMAL;
+import static com.hayanige.chess.Piece.NOPIECE;
+import static com.hayanige.chess.Piece.WHITE_KNIGHT;
+import static com.hayanige.chess.PieceType.NOPIECETYPE;
+import static com.hayanige.chess.Square.b1;
+import static com.hayanige.chess.Square.c3;
+import static com.hayanige.chess.TranspositionTable.EXACT;
+import static com.hayanige.chess.TranspositionTable.LOWER;
+import static com.hayanige.chess.TranspositionTable.NOENTRY;
+import static com.hayanige.chess.TranspositionTable.UPPER;
+import static com.hayanige.chess.Value.CHECKMATE;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestTranspositionTable {
+
+  @Test
+  public void testStoreAndProbe() {
+    TranspositionTable table = new TranspositionTable(1);
+    Position position = Notation.toPosition(Notation.STANDARDPOSITION);
+    int move = Move.valueOf(NORMAL, b1, c3, WHITE_KNIGHT, NOPIECE,
+        NOPIECETYPE);
+
+    assertEquals(table.probe(position.zobristKey), NOENTRY);
+
+    table.store(position.zobristKey, move, 5, LOWER, -42, 0);
+    long entry = table.probe(position.zobristKey);
+
+    assertEquals(TranspositionTable.getMove(entry), move);
+    assertEquals(TranspositionTable.getDepth(entry), 5);
+    assertEquals(TranspositionTable.getBound(entry), LOWER);
+    assertEquals(TranspositionTable.getValue(entry, 0), -42);
+
+    table.clear();
+    assertEquals(table.probe(position.zobristKey), NOENTRY);
+  }
+
+  @Test
+  public void testMateValue() {
+    TranspositionTable table = new TranspositionTable(1);
+    long zobristKey = 0x123456789ABCDEFL;
+
+    // Mate in 5 plies from the root found at ply 3
+    table.store(zobristKey, NOMOVE, 2, EXACT, CHECKMATE - 5, 3);
+
+    // Reached again at ply 1 it is a mate in 3 plies from the root
+    long entry = table.probe(zobristKey);
+    assertEquals(TranspositionTable.getValue(entry, 1), CHECKMATE - 3);
+
+    // A shallower result does not replace a deeper one
+    table.store(zobristKey, NOMOVE, -1, UPPER, -CHECKMATE + 4, 4);
+    entry = table.probe(zobristKey);
+    assertEquals(TranspositionTable.getDepth(entry), 2);
+
+    table.newSearch();
+    table.store(zobristKey, NOMOVE, -1, UPPER, -CHECKMATE + 4, 4);
+    entry = table.probe(zobristKey);
+    assertEquals(TranspositionTable.getDepth(entry), -1);
+    assertEquals(TranspositionTable.getValue(entry, 2), -CHECKMATE + 2);
+  }
+}